@@ -0,0 +1,45 @@
+package benchmark;
+
+import graphics.Bitmap;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//converting a whole frame to packed BGR bytes
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BitmapBenchmark
+{
+	private static final int SIZE = 900;
+
+	private Bitmap frame;
+	private byte[] bgr;
+
+	@Setup
+	public void setup()
+	{
+		frame = Textures.checker(SIZE);
+		bgr = new byte[SIZE * SIZE * 3];
+	}
+
+	@Benchmark
+	public byte[] getByteArrayBGR()
+	{
+		frame.getByteArrayBGR(bgr);
+		return bgr;
+	}
+}
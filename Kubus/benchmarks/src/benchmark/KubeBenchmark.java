@@ -0,0 +1,77 @@
+package benchmark;
+
+import entity.Kube;
+import entity.Tile;
+import game.KubusMain;
+import graphics.Camera;
+import graphics.Matrix4f;
+import graphics.Renderer;
+import graphics.Vector4f;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//a whole frame of the cube with every tile placed, seen from the corner RasterBenchmark starts at
+//the renderer is set up from the kubus.* properties like the game, pass them with -jvmArgsAppend -Dkubus.threads=4 etc.
+//the tile textures are loaded from res/, so this has to run from the project directory
+//faceLength 500 places 1.5 million tiles, which needs a few gigabytes of heap
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class KubeBenchmark
+{
+	private static final int SIZE = 900;
+
+	@Param({"5", "50", "500"})
+	public int faceLength;
+
+	private Renderer renderer;
+	private Kube kube;
+	private Matrix4f viewProjection;
+
+	@Setup
+	public void setup()
+	{
+		renderer = new Renderer(SIZE, SIZE);
+		KubusMain.configure(renderer);
+
+		kube = new Kube(faceLength, 1.5f / faceLength);
+		for(int face=1;face<=6;face++)
+		{
+			for(int x=0;x<faceLength;x++)
+			{
+				for(int y=0;y<faceLength;y++)
+				{
+					new Tile(x, y, 0, null, kube, face);
+				}
+			}
+		}
+
+		Camera c = new Camera(new Matrix4f().initPerspective((float)Math.toRadians(70.0f), 1, 0.1f, 1000.0f));
+		c.setPosition(new Vector4f(1.5f, 1.5f, 1.5f, 1));
+		c.setRotation(new Vector4f(-2, -2, -2, 0), new Vector4f(-2, 2, -2, 0), 0);
+		viewProjection = c.getViewProjection();
+	}
+
+	@Benchmark
+	public void renderFaces()
+	{
+		renderer.clear();
+		kube.renderFaces(renderer, viewProjection);
+		renderer.flush();
+	}
+}
@@ -0,0 +1,89 @@
+package benchmark;
+
+import graphics.Matrix4f;
+import graphics.Vector4f;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//Matrix4f products and vertex transforms, the allocating versions next to the ones writing into a destination
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatrixBenchmark
+{
+	//vertices per call of the batched transform
+	private static final int BATCH = 256;
+
+	private Matrix4f a;
+	private Matrix4f b;
+	private Matrix4f dest;
+	private Vector4f v;
+	private Vector4f vDest;
+	private float[] positions;
+	private float[] transformed;
+
+	@Setup
+	public void setup()
+	{
+		a = new Matrix4f().initPerspective((float)Math.toRadians(70), 1, 0.1f, 1000);
+		b = new Matrix4f().initRotation(0.3f, 0.7f, 0.1f);
+		b.mulInPlace(new Matrix4f().initTranslation(1, 2, 3));
+		dest = new Matrix4f();
+		v = new Vector4f(0.5f, -0.25f, 2, 1);
+		vDest = new Vector4f(0, 0, 0, 0);
+		positions = new float[BATCH * 4];
+		transformed = new float[BATCH * 4];
+		for(int i=0;i<positions.length;i++)
+		{
+			positions[i] = i % 4 == 3 ? 1 : (i * 0.37f) % 5 - 2.5f;
+		}
+	}
+
+	@Benchmark
+	public Matrix4f mul()
+	{
+		return a.mul(b);
+	}
+
+	@Benchmark
+	public Matrix4f mulInto()
+	{
+		return a.mulInto(b, dest);
+	}
+
+	@Benchmark
+	public Vector4f transform()
+	{
+		return a.transform(v);
+	}
+
+	@Benchmark
+	public Vector4f transformInto()
+	{
+		return a.transformInto(v, vDest);
+	}
+
+	//per vertex
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public float[] transformArray()
+	{
+		a.transformInto(positions, 0, transformed, 0, BATCH);
+		return transformed;
+	}
+}
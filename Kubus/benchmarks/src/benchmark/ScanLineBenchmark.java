@@ -0,0 +1,84 @@
+package benchmark;
+
+import graphics.Bitmap;
+import graphics.Renderer;
+import graphics.Vector4f;
+import graphics.Vertex;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//the scanline path's inner loop, drawScanLine is private so a rectangle ROWS pixels high and spanLength pixels wide is
+//drawn and the time is reported per row, each row is split into two spans by the rectangle's diagonal
+//spanBatching runs the spans through SpanRenderer, vectorized when jdk.incubator.vector is available
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScanLineBenchmark
+{
+	private static final int SIZE = 900;
+	private static final int ROWS = 32;
+
+	@Param({"4", "16", "64", "256", "896"})
+	public int spanLength;
+
+	@Param({"false", "true"})
+	public boolean spanBatching;
+
+	private Renderer renderer;
+	private Bitmap texture;
+	private Vertex topLeft;
+	private Vertex topRight;
+	private Vertex bottomLeft;
+	private Vertex bottomRight;
+
+	@Setup
+	public void setup()
+	{
+		renderer = new Renderer(SIZE, SIZE);
+		renderer.setDepthTagging(true);
+		renderer.setSpanBatching(spanBatching);
+		texture = Textures.checker(256);
+
+		//pixel edges at .5 so every row covers exactly spanLength pixels
+		float left = 1.5f;
+		float right = left + spanLength;
+		float top = 100.5f;
+		float bottom = top + ROWS;
+		topLeft = vertex(left, top, 0, 0);
+		topRight = vertex(right, top, 1, 0);
+		bottomLeft = vertex(left, bottom, 0, 1);
+		bottomRight = vertex(right, bottom, 1, 1);
+	}
+
+	//clip space with w = 1 from pixel coordinates
+	private static Vertex vertex(float x, float y, float u, float v)
+	{
+		float half = SIZE / 2.f;
+		return new Vertex(new Vector4f(x / half - 1, y / half - 1, 0.5f, 1), new Vector4f(u, v, 0, 0));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void drawRows()
+	{
+		renderer.clearDepthBuffer();
+		renderer.drawTriangle(topLeft, topRight, bottomLeft, texture);
+		renderer.drawTriangle(topRight, bottomRight, bottomLeft, texture);
+	}
+}
@@ -0,0 +1,22 @@
+package benchmark;
+
+import graphics.Bitmap;
+
+//procedural textures, so the raster benchmarks do not depend on image decoding or the files in res/
+class Textures
+{
+	//8x8 texel checkerboard in two shades of green
+	public static Bitmap checker(int size)
+	{
+		Bitmap texture = new Bitmap(size, size);
+		int[] pixels = texture.getPixels();
+		for(int y=0;y<size;y++)
+		{
+			for(int x=0;x<size;x++)
+			{
+				pixels[y * size + x] = ((x >> 3) + (y >> 3)) % 2 == 0 ? 0x3f7f2f : 0x2f5f1f;
+			}
+		}
+		return texture;
+	}
+}
@@ -0,0 +1,80 @@
+package benchmark;
+
+import graphics.Bitmap;
+import graphics.Renderer;
+import graphics.Vector4f;
+import graphics.Vertex;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//Renderer.drawTriangle for a triangle well inside the viewport and one that crosses the near plane and leaves the
+//guard band, so it goes through the Clipper, with each rasterizer
+//the depth buffer is cleared before every draw so every pixel is written, depth tagging keeps that clear O(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TriangleBenchmark
+{
+	private static final int SIZE = 900;
+
+	@Param({"0", "1", "2"})
+	public int rasterMode;
+
+	private Renderer renderer;
+	private Bitmap texture;
+	private Vertex[] inside;
+	private Vertex[] clipped;
+
+	@Setup
+	public void setup()
+	{
+		renderer = new Renderer(SIZE, SIZE);
+		renderer.setDepthTagging(true);
+		renderer.setRasterMode(rasterMode);
+		texture = Textures.checker(256);
+
+		inside = new Vertex[] {
+				vertex(-0.2f, -0.2f, 0.5f, 1, 0, 0),
+				vertex(0.2f, -0.15f, 0.5f, 1, 1, 0),
+				vertex(0, 0.2f, 0.6f, 1, 0.5f, 1) };
+		//one vertex behind the near plane and far past the right edge, clipped to a quad before it is rasterized
+		clipped = new Vertex[] {
+				vertex(-0.2f, -0.2f, 0.5f, 1, 0, 0),
+				vertex(40, -0.1f, -2, 1, 1, 0),
+				vertex(0, 0.2f, 0.6f, 1, 0.5f, 1) };
+	}
+
+	private static Vertex vertex(float x, float y, float z, float w, float u, float v)
+	{
+		return new Vertex(new Vector4f(x, y, z, w), new Vector4f(u, v, 0, 0));
+	}
+
+	@Benchmark
+	public void drawInside()
+	{
+		renderer.clearDepthBuffer();
+		renderer.drawTriangle(inside[0], inside[1], inside[2], texture);
+	}
+
+	@Benchmark
+	public void drawClipped()
+	{
+		renderer.clearDepthBuffer();
+		renderer.drawTriangle(clipped[0], clipped[1], clipped[2], texture);
+	}
+}
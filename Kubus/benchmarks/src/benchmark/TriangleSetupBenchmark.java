@@ -0,0 +1,69 @@
+package benchmark;
+
+import graphics.Edge;
+import graphics.Gradient;
+import graphics.Vector4f;
+import graphics.Vertex;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+//the per triangle setup of the scanline path, a Gradient and the three Edges scanTriangle builds from it
+//the vertices are screen space with w kept for the perspective correct attributes, as after perspectiveDivide
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TriangleSetupBenchmark
+{
+	private Vertex minY;
+	private Vertex midY;
+	private Vertex maxY;
+	private Gradient gradient;
+
+	@Setup
+	public void setup()
+	{
+		minY = new Vertex(new Vector4f(412.3f, 101.7f, 0.52f, 2.1f), new Vector4f(0, 0, 0, 0));
+		midY = new Vertex(new Vector4f(640.8f, 260.2f, 0.55f, 2.6f), new Vector4f(1, 0, 0, 0));
+		maxY = new Vertex(new Vector4f(300.1f, 488.9f, 0.61f, 3.4f), new Vector4f(0.5f, 1, 0, 0));
+		gradient = new Gradient(minY, midY, maxY);
+	}
+
+	@Benchmark
+	public Gradient gradient()
+	{
+		return new Gradient(minY, midY, maxY);
+	}
+
+	@Benchmark
+	public void edges(Blackhole bh)
+	{
+		bh.consume(new Edge(gradient, minY, maxY, 0));
+		bh.consume(new Edge(gradient, minY, midY, 0));
+		bh.consume(new Edge(gradient, midY, maxY, 1));
+	}
+
+	//both together, what every triangle pays before its first span
+	@Benchmark
+	public void gradientAndEdges(Blackhole bh)
+	{
+		Gradient grad = new Gradient(minY, midY, maxY);
+		bh.consume(new Edge(grad, minY, maxY, 0));
+		bh.consume(new Edge(grad, minY, midY, 0));
+		bh.consume(new Edge(grad, midY, maxY, 1));
+	}
+}
@@ -0,0 +1,71 @@
+package graphics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+//one rendered frame, its duration runs from the start of the frame to the start of the next one
+@Name("kubus.Frame")
+@Label("Frame")
+@Category("Kubus")
+@Description("Stage times and pipeline counters of one rendered frame")
+@StackTrace(false)
+class FrameEvent extends jdk.jfr.Event
+{
+	@Label("Transform")
+	@Timespan
+	long transformTime;
+
+	@Label("Clip")
+	@Timespan
+	long clipTime;
+
+	@Label("Setup")
+	@Timespan
+	long setupTime;
+
+	@Label("Fill")
+	@Description("Summed over every raster thread in binned mode")
+	@Timespan
+	long fillTime;
+
+	@Label("Present")
+	@Timespan
+	long presentTime;
+
+	@Label("Triangles Submitted")
+	int trianglesSubmitted;
+
+	@Label("Triangles Outside")
+	int trianglesOutside;
+
+	@Label("Triangles Clipped")
+	int trianglesClipped;
+
+	@Label("Triangles Culled")
+	int trianglesCulled;
+
+	@Label("Triangles Rasterized")
+	int trianglesRasterized;
+
+	@Label("Triangles Occluded")
+	int trianglesOccluded;
+
+	@Label("Meshes Drawn")
+	int meshesDrawn;
+
+	@Label("Meshes Culled")
+	int meshesCulled;
+
+	@Label("Pixels Written")
+	long pixelsWritten;
+
+	@Label("Pixels Covered")
+	int pixelsCovered;
+
+	@Label("Overdraw")
+	float overdraw;
+}
@@ -0,0 +1,53 @@
+package graphics;
+
+//emits a kubus.Frame flight recorder event per frame, record with e.g.
+//java -XX:StartFlightRecording=filename=kubus.jfr ... and open the file in JDK Mission Control or with jfr print
+//build with: javac -cp <classes of src> -d <classes of src> src-jfr/graphics/*.java
+class JfrFrameRecorder extends FrameRecorder
+{
+	private FrameEvent event;
+
+	@Override
+	public String getName()
+	{
+		return "jfr";
+	}
+
+	@Override
+	public void frameStarted()
+	{
+		event = new FrameEvent();
+		event.begin();
+	}
+
+	@Override
+	public void frameFinished(RenderStats stats, long frameNanos)
+	{
+		if(event == null)
+		{
+			return;
+		}
+		event.end();
+		if(event.shouldCommit())
+		{
+			event.transformTime = stats.getStageNanos(RenderStats.STAGE_TRANSFORM);
+			event.clipTime = stats.getStageNanos(RenderStats.STAGE_CLIP);
+			event.setupTime = stats.getStageNanos(RenderStats.STAGE_SETUP);
+			event.fillTime = stats.getStageNanos(RenderStats.STAGE_FILL);
+			event.presentTime = stats.getStageNanos(RenderStats.STAGE_PRESENT);
+			event.trianglesSubmitted = stats.getTrianglesSubmitted();
+			event.trianglesOutside = stats.getTrianglesOutside();
+			event.trianglesClipped = stats.getTrianglesClipped();
+			event.trianglesCulled = stats.getTrianglesCulled();
+			event.trianglesRasterized = stats.getTrianglesRasterized();
+			event.trianglesOccluded = stats.getTrianglesOccluded();
+			event.meshesDrawn = stats.getMeshesDrawn();
+			event.meshesCulled = stats.getMeshesCulled();
+			event.pixelsWritten = stats.getPixelsWritten();
+			event.pixelsCovered = stats.getPixelsCovered();
+			event.overdraw = stats.getOverdraw();
+			event.commit();
+		}
+		event = null;
+	}
+}
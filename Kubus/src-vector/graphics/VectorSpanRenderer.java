@@ -0,0 +1,108 @@
+package graphics;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+//SpanRenderer on jdk.incubator.vector, one preferred width vector of pixels per iteration
+//the depth test is a float lane mask that blends new depth and gathered texels into the old values
+//build with: javac --add-modules jdk.incubator.vector -cp <classes of src> -d <classes of src> src-vector/graphics/*.java
+class VectorSpanRenderer extends SpanRenderer
+{
+	private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+	//float to int truncation through the mantissa, since F2I and indexed gathers are not intrinsics on JDK 17
+	private static final float ROUND = 1 << 23;
+	private static final float LIMIT = 1 << 22;
+	private static final float SIGNED_ROUND = 1.5f * (1 << 23);
+	private static final int SIGNED_ROUND_BITS = Float.floatToRawIntBits(SIGNED_ROUND);
+	private static final FloatVector ZERO = FloatVector.zero(FLOATS);
+	private static final FloatVector ONE = FloatVector.broadcast(FLOATS, 1.f);
+
+	private final FloatVector iota;
+
+	public VectorSpanRenderer()
+	{
+		if(FLOATS.length() != INTS.length() || FLOATS.length() < 4)
+		{
+			throw new UnsupportedOperationException("no usable vector shape");
+		}
+		float[] lanes = new float[FLOATS.length()];
+		for(int a=0;a<lanes.length;a++)
+		{
+			lanes[a] = a;
+		}
+		iota = FloatVector.fromArray(FLOATS, lanes, 0);
+	}
+
+	//same as (int)t for |t| < 2^22, larger values saturate and end up outside the texture
+	private static IntVector truncate(FloatVector t)
+	{
+		FloatVector a = t.abs().min(LIMIT);
+		FloatVector r = a.add(ROUND).sub(ROUND);
+		r = r.sub(ZERO.blend(ONE, r.compare(VectorOperators.GT, a)));
+		r = r.blend(r.neg(), t.compare(VectorOperators.LT, 0.f));
+		return r.add(SIGNED_ROUND).reinterpretAsInts().sub(SIGNED_ROUND_BITS);
+	}
+
+	@Override
+	public String getName()
+	{
+		return "vector x" + FLOATS.length();
+	}
+
+	@Override
+	public int drawSpan(int[] pixels, float[] depthBuffer, int start, int from, int to,
+			float depth, float depthStep, float oneOverZ, float oneOverZStep,
+			float texCoordX, float texCoordXStep, float texCoordY, float texCoordYStep, Bitmap texture)
+	{
+		int[] texels = texture.getPixels();
+		int texWidth = texture.getWidth();
+		float scaleX = texture.getWidth() - 1;
+		float scaleY = texture.getHeight() - 1;
+		int lanes = FLOATS.length();
+		int i = from;
+		int written = 0;
+
+		//whole vectors only, every pixel of a span belongs to one thread so blending and storing all lanes is safe
+		for(;i<=to-lanes;i+=lanes)
+		{
+			int index = start + i;
+			FloatVector fi = iota.add((float)i);
+
+			FloatVector d = fi.mul(depthStep).add(depth);
+			FloatVector stored = FloatVector.fromArray(FLOATS, depthBuffer, index);
+			VectorMask<Float> pass = stored.compare(VectorOperators.GT, d);
+			if(!pass.anyTrue())
+			{
+				continue;
+			}
+			written += pass.trueCount();
+			stored.blend(d, pass).intoArray(depthBuffer, index);
+
+			FloatVector z = fi.mul(oneOverZStep).add(oneOverZ);
+			z = ONE.div(z);
+			FloatVector u = fi.mul(texCoordXStep).add(texCoordX).mul(z).mul(scaleX).add(0.5f);
+			FloatVector v = fi.mul(texCoordYStep).add(texCoordY).mul(z).mul(scaleY).add(0.5f);
+			IntVector src = truncate(v).mul(texWidth).add(truncate(u));
+
+			//the span's own pixels hold the clamped offsets for the gather, outside lanes become 0 like Bitmap.getPixel
+			VectorMask<Integer> outside = src.compare(VectorOperators.LT, 0)
+					.or(src.compare(VectorOperators.GE, texels.length));
+			IntVector old = IntVector.fromArray(INTS, pixels, index);
+			src.max(0).min(texels.length - 1).intoArray(pixels, index);
+			for(int k=index;k<index+lanes;k++)
+			{
+				pixels[k] = texels[pixels[k]];
+			}
+			IntVector color = IntVector.fromArray(INTS, pixels, index).blend(0, outside);
+			old.blend(color, pass.cast(INTS)).intoArray(pixels, index);
+		}
+
+		return written + drawPixels(pixels, depthBuffer, start, i, to, depth, depthStep,
+				oneOverZ, oneOverZStep, texCoordX, texCoordXStep, texCoordY, texCoordYStep, texture);
+	}
+}
@@ -8,12 +8,17 @@ import graphics.Vector4f;
 public class Entity {
 	
 	private Vector4f position;
+	//position before the current simulation tick, see interpolate
+	private Vector4f previousPosition;
+	private Vector4f interpolated;
 	protected Transformation renderTransform;
 	
 	public Entity() 
 	{
 		renderTransform = new Transformation();
 		position = new Vector4f(0, 0, 0, 1);
+		previousPosition = position;
+		interpolated = new Vector4f(0, 0, 0, 1);
 	}
 	
 	public void tick() 
@@ -45,4 +50,26 @@ public class Entity {
 		return position;
 	}
 	
+	//call before a simulation tick moves the entity
+	public void savePreviousPosition()
+	{
+		previousPosition = position;
+	}
+	
+	//draws the entity alpha of the way from its previous to its current position, only the render transform moves
+	//an unchanged result leaves the transform clean so a resting entity does not rebuild its matrix every frame
+	public void interpolate(float alpha)
+	{
+		float x = previousPosition.getX() + (position.getX() - previousPosition.getX()) * alpha;
+		float y = previousPosition.getY() + (position.getY() - previousPosition.getY()) * alpha;
+		float z = previousPosition.getZ() + (position.getZ() - previousPosition.getZ()) * alpha;
+		Vector4f current = renderTransform.getPosition();
+		if(current.getX() == x && current.getY() == y && current.getZ() == z && current.getW() == position.getW())
+		{
+			return;
+		}
+		interpolated.setXYZW(x, y, z, position.getW());
+		renderTransform.setPosition(interpolated);
+	}
+	
 }
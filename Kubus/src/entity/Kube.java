@@ -1,14 +1,13 @@
 package entity;
 
-import graphics.Bitmap;
 import graphics.Matrix4f;
 import graphics.Mesh;
 import graphics.Renderer;
+import graphics.TextureAtlas;
+import graphics.TextureCache;
 import graphics.Transformation;
 import graphics.Vector4f;
-import graphics.Vertex;
 
-import java.io.IOException;
 import java.util.ArrayList;
 
 /*
@@ -35,81 +34,76 @@ public class Kube
 	//try 10x10 faces
 	private int faceLength;
 	
+	//tile textures are packed into one atlas so every chunk of tiles stays in a single batch
+	public static final int TILE_ATLAS_SIZE = 1024;
+	public static final String WALL_TEXTURE = "res/brik.jpg";
+	//tiles are batched in square chunks of each face, so chunks outside the view are culled as a whole
+	public static final int TILE_CHUNK_SIZE = 8;
+	
 	private static Mesh wallMesh;
 	
+	//every added tile per face in the order they were added
 	private ArrayList<ArrayList<Tile>> tiles;
+	//tiles by face - 1 and x * faceLength + y, the first one added at a position or null, lookups never scan
+	private Tile[][] grid;
 	private ArrayList<Tile[]> walls;
-	private static Bitmap grass;
+	//world space copies of every tile and wall, drawn with just the view projection
+	//a chunk's mesh is rebuilt from its builder after tiles were added to it, null until then
+	private int chunksPerSide;
+	private Mesh[] tileChunks;
+	private Mesh.Builder[] tileChunkBuilders;
+	//tiles by the chunk they are baked into
+	private ArrayList<ArrayList<Tile>> chunkTiles;
+	private boolean[] chunkBoundsDirty;
+	private ArrayList<Tile> dirtyTiles;
+	//tiles whose transformation was handed out, they are rebaked when its version moved on
+	private ArrayList<Tile> watchedTiles;
+	private Mesh wallBatch;
+	private boolean wallsDirty;
+	//places the whole cube in the world, tiles are baked relative to it and entities on it use it as their parent
+	private Transformation transform;
+	private TextureAtlas tileAtlas;
+	private TextureCache.Handle wallTexture;
 	static
 	{
-		ArrayList<Vertex> vertices = new ArrayList<Vertex>();
-		ArrayList<Integer> indices = new ArrayList<Integer>();
+		Mesh.Builder builder = new Mesh.Builder();
 
-		vertices.add(new Vertex(new Vector4f(-0.5f, 0, -0.5f, 1), new Vector4f(0, 0, 0, 0)));
-		vertices.add(new Vertex(new Vector4f(0.5f, 0, -0.5f, 1), new Vector4f(0, 0, 0, 0)));
-		vertices.add(new Vertex(new Vector4f(-0.5f, 0, 0.5f, 1), new Vector4f(0.5f, 0, 0, 0)));
-		vertices.add(new Vertex(new Vector4f(0.5f, 0, 0.5f, 1), new Vector4f(0.5f, 0, 0, 0)));
+		builder.addVertex(-0.5f, 0, -0.5f, 0, 0);
+		builder.addVertex(0.5f, 0, -0.5f, 0, 0);
+		builder.addVertex(-0.5f, 0, 0.5f, 0.5f, 0);
+		builder.addVertex(0.5f, 0, 0.5f, 0.5f, 0);
 		
-		vertices.add(new Vertex(new Vector4f(-0.5f, 0.2f, -0.5f, 1), new Vector4f(0, 0.25f, 0, 0)));
-		vertices.add(new Vertex(new Vector4f(0.5f, 0.2f, -0.5f, 1), new Vector4f(0, 0.25f, 0, 0)));
-		vertices.add(new Vertex(new Vector4f(-0.5f, 0.2f, 0.5f, 1), new Vector4f(0.5f, 0.25f, 0, 0)));
-		vertices.add(new Vertex(new Vector4f(0.5f, 0.2f, 0.5f, 1), new Vector4f(0.5f, 0.25f, 0, 0)));
+		builder.addVertex(-0.5f, 0.2f, -0.5f, 0, 0.25f);
+		builder.addVertex(0.5f, 0.2f, -0.5f, 0, 0.25f);
+		builder.addVertex(-0.5f, 0.2f, 0.5f, 0.5f, 0.25f);
+		builder.addVertex(0.5f, 0.2f, 0.5f, 0.5f, 0.25f);
 
-		indices.add(0);
-		indices.add(1);
-		indices.add(2);
+		builder.addTriangle(0, 1, 2);
 		
-		indices.add(1);
-		indices.add(3);
-		indices.add(2);
+		builder.addTriangle(1, 3, 2);
 		
-		indices.add(0);
-		indices.add(2);
-		indices.add(4);
+		builder.addTriangle(0, 2, 4);
 		
-		indices.add(4);
-		indices.add(6);
-		indices.add(2);
+		builder.addTriangle(4, 2, 6);
 		
-		indices.add(4);
-		indices.add(5);
-		indices.add(6);
+		builder.addTriangle(4, 6, 5);
 		
-		indices.add(5);
-		indices.add(6);
-		indices.add(7);
+		builder.addTriangle(5, 6, 7);
 		
-		indices.add(4);
-		indices.add(0);
-		indices.add(1);
+		builder.addTriangle(4, 1, 0);
 		
-		indices.add(5);
-		indices.add(4);
-		indices.add(1);
+		builder.addTriangle(5, 1, 4);
 		
-		indices.add(5);
-		indices.add(7);
-		indices.add(3);
+		builder.addTriangle(5, 7, 3);
 		
-		indices.add(5);
-		indices.add(1);
-		indices.add(3);
+		builder.addTriangle(5, 3, 1);
 		
-		indices.add(6);
-		indices.add(7);
-		indices.add(2);
+		builder.addTriangle(6, 2, 7);
 		
-		indices.add(7);
-		indices.add(3);
-		indices.add(2);
+		builder.addTriangle(7, 2, 3);
 		
-		wallMesh = new Mesh(vertices, indices);
-		try {
-			grass = new Bitmap("res/brik.jpg");
-		} catch (IOException e) {
-			grass = new Bitmap(1, 1);
-			e.printStackTrace();
-		}
+		//every face winds clockwise when seen from outside the box
+		wallMesh = builder.setCullMode(Renderer.CULL_BACK).build();
 	}
 	
 	public Kube(int faceLength, float tileLength)
@@ -118,7 +112,22 @@ public class Kube
 		this.tileLength = tileLength;
 		tiles = new ArrayList<ArrayList<Tile>>();
 		for(int a=0;a<6;a++) { tiles.add(new ArrayList<Tile>()); }
+		grid = new Tile[6][faceLength * faceLength];
 		walls = new ArrayList<Tile[]>();
+		chunksPerSide = (faceLength + TILE_CHUNK_SIZE - 1) / TILE_CHUNK_SIZE;
+		tileChunks = new Mesh[6 * chunksPerSide * chunksPerSide];
+		tileChunkBuilders = new Mesh.Builder[tileChunks.length];
+		chunkTiles = new ArrayList<ArrayList<Tile>>();
+		for(int a=0;a<tileChunks.length;a++) { chunkTiles.add(new ArrayList<Tile>()); }
+		chunkBoundsDirty = new boolean[tileChunks.length];
+		dirtyTiles = new ArrayList<Tile>();
+		watchedTiles = new ArrayList<Tile>();
+		transform = new Transformation();
+		tileAtlas = new TextureAtlas(TILE_ATLAS_SIZE, TILE_ATLAS_SIZE);
+		wallTexture = TextureCache.getShared().getHandle(WALL_TEXTURE);
+		tileAtlas.add(Tile.TEXTURE, TextureCache.getShared().get(Tile.TEXTURE));
+		//the atlas belongs to the kube but still counts against the shared texture budget
+		TextureCache.getShared().pin(tileAtlas.getBitmap());
 	}
 	
 	public void addWall(Tile t1, Tile t2)
@@ -126,6 +135,9 @@ public class Kube
 		//check if wall already exists
 		Tile[] newWall = new Tile[]{t1, t2};
 		walls.add(newWall);
+		t1.setWallTile(true);
+		t2.setWallTile(true);
+		wallsDirty = true;
 	}
 	
 	public boolean wallInDirection(int face, int x, int y, int dx, int dy)
@@ -154,6 +166,11 @@ public class Kube
 		
 	}
 	
+	public Transformation getTransform()
+	{
+		return transform;
+	}
+	
 	public int getFaceLength()
 	{
 		return faceLength;
@@ -185,20 +202,57 @@ public class Kube
 		return nearestTile;
 	}
 	
+	//null for positions off the face or without a tile
 	public Tile getTileAt(int face, int xIndex, int yIndex)
 	{
-		if(face >= tiles.size() || xIndex >= faceLength || yIndex >= faceLength)
+		if(!isOnFace(face, xIndex, yIndex))
+		{
 			return null;
-		face--;
-		ArrayList<Tile> arrayListFace = tiles.get(face);
-		for(Tile t : arrayListFace)
+		}
+		return grid[face - 1][xIndex * faceLength + yIndex];
+	}
+	
+	private boolean isOnFace(int face, int xIndex, int yIndex)
+	{
+		return face >= 1 && face <= 6 && xIndex >= 0 && yIndex >= 0 && xIndex < faceLength && yIndex < faceLength;
+	}
+	
+	//a tile only takes a free position, so a lookup finds the first tile added there
+	private void place(Tile tile)
+	{
+		int face = tile.getFace();
+		if(isOnFace(face, tile.getXIndex(), tile.getYIndex()))
 		{
-			if(t.getXIndex() == xIndex && t.getYIndex() == yIndex)
+			int slot = tile.getXIndex() * faceLength + tile.getYIndex();
+			if(grid[face - 1][slot] == null)
 			{
-				return t;
+				grid[face - 1][slot] = tile;
 			}
 		}
-		return null;
+	}
+	
+	//called by a tile whose indices changed from oldX, oldY
+	void tileMoved(Tile tile, int oldX, int oldY)
+	{
+		if(tile.getBakeSlot() < 0)
+		{
+			return;
+		}
+		int face = tile.getFace();
+		if(isOnFace(face, oldX, oldY) && grid[face - 1][oldX * faceLength + oldY] == tile)
+		{
+			grid[face - 1][oldX * faceLength + oldY] = null;
+			//only happens if several tiles were added at one position, the earliest remaining one takes over
+			for(Tile t : tiles.get(face - 1))
+			{
+				if(t != tile && t.getXIndex() == oldX && t.getYIndex() == oldY)
+				{
+					grid[face - 1][oldX * faceLength + oldY] = t;
+					break;
+				}
+			}
+		}
+		place(tile);
 	}
 	
 	public boolean addTile(Tile tile)
@@ -210,7 +264,34 @@ public class Kube
 			return false;
 		}
 		tiles.get(index).add(tile);
-		tile.getTransform().setRotation(getFaceRotation(tile.getFace()));
+		place(tile);
+
+		//the chunk is picked once, a tile that moves later stays in it and the chunk's bounds grow
+		int chunk = getChunk(index, tile.getXIndex(), tile.getYIndex());
+		Mesh.Builder builder = tileChunkBuilders[chunk];
+		if(builder == null)
+		{
+			builder = new Mesh.Builder().setCullMode(Tile.getMesh().getCullMode());
+			tileChunkBuilders[chunk] = builder;
+		}
+		tile.setBakeChunk(chunk);
+		chunkTiles.get(chunk).add(tile);
+		tile.setBakeSlot(builder.getNumVertices());
+
+		//placeholders, the vertices are filled in when the tile is baked
+		Mesh square = Tile.getMesh();
+		int base = builder.getNumVertices();
+		for(int a=0;a<square.getNumVertices();a++)
+		{
+			builder.addVertex(0, 0, 0, 0, 0);
+		}
+		for(int a=0;a<square.getNumIndices();a++)
+		{
+			builder.addIndex(base + square.getIndex(a));
+		}
+		tileChunks[chunk] = null;
+		tileChanged(tile);
+		tile.renderTransform.setRotation(getFaceRotation(tile.getFace()));
 		return true;
 	}
 	
@@ -252,23 +333,141 @@ public class Kube
 	}
 	
 	
+	private int getChunk(int faceIndex, int x, int y)
+	{
+		int cx = Math.min(Math.max(x, 0), faceLength - 1) / TILE_CHUNK_SIZE;
+		int cy = Math.min(Math.max(y, 0), faceLength - 1) / TILE_CHUNK_SIZE;
+		return (faceIndex * chunksPerSide + cx) * chunksPerSide + cy;
+	}
+	
 	public Matrix4f getFaceRotation(int face)
 	{
 		return getRelativeRotation(face);
 	}
 	
+	//called when anything that affects how a tile is drawn changes, only that tile is rebaked
+	void tileChanged(Tile tile)
+	{
+		if(tile.getBakeSlot() < 0)
+		{
+			return;
+		}
+		if(!tile.isBakeDirty())
+		{
+			tile.setBakeDirty(true);
+			dirtyTiles.add(tile);
+		}
+		if(tile.isWallTile())
+		{
+			wallsDirty = true;
+		}
+	}
+	
+	//called by a tile that handed out its transformation, changes to it can only be found by its version
+	void watchTransform(Tile tile)
+	{
+		watchedTiles.add(tile);
+	}
+	
 	public void renderFaces(Renderer render, Matrix4f viewProjection)
 	{
-		for(int a=0;a<6;a++)
+		for(int a=0;a<tileChunks.length;a++)
+		{
+			if(tileChunks[a] == null && tileChunkBuilders[a] != null)
+			{
+				rebuildChunk(a);
+			}
+		}
+		for(Tile t : watchedTiles)
 		{
-			for(int b=0;b<tiles.get(a).size();b++)
+			if(t.renderTransform.getVersion() != t.getBakeVersion())
 			{
-				tiles.get(a).get(b).render(render, viewProjection);
+				tileChanged(t);
 			}
 		}
+		if(!dirtyTiles.isEmpty())
+		{
+			bakeDirtyTiles();
+		}
+		if(wallsDirty)
+		{
+			bakeWalls();
+		}
+		Matrix4f model = transform.getTransformation();
+		for(int a=0;a<tileChunks.length;a++)
+		{
+			if(tileChunks[a] != null)
+			{
+				tileChunks[a].draw(render, viewProjection, model, tileAtlas.getBitmap());
+			}
+		}
+		if(wallBatch != null)
+		{
+			wallBatch.draw(render, viewProjection, model, wallTexture.get());
+		}
+	}
+	
+	//the new mesh starts out with placeholder vertices, so every tile in it is baked again
+	private void rebuildChunk(int chunk)
+	{
+		tileChunks[chunk] = tileChunkBuilders[chunk].build();
+		for(Tile t : chunkTiles.get(chunk))
+		{
+			tileChanged(t);
+		}
+	}
+	
+	private void bakeDirtyTiles()
+	{
+		Mesh square = Tile.getMesh();
+		float[] squareTexCoords = square.getTexCoords();
+		for(Tile t : dirtyTiles)
+		{
+			Matrix4f model = t.renderTransform.getTransformation();
+			t.setBakeVersion(t.renderTransform.getVersion());
+			TextureAtlas.Region region = getTileRegion(t);
+			Mesh chunk = tileChunks[t.getBakeChunk()];
+			int base = t.getBakeSlot();
+			model.transformInto(square.getPositions(), 0, chunk.getPositions(), base * Mesh.POSITION_SIZE,
+					square.getNumVertices());
+			for(int a=0;a<square.getNumVertices();a++)
+			{
+				int uv = a * Mesh.TEXCOORD_SIZE;
+				chunk.setTexCoord(base + a, region.mapU(squareTexCoords[uv]), region.mapV(squareTexCoords[uv + 1]));
+			}
+			chunkBoundsDirty[t.getBakeChunk()] = true;
+			t.setBakeDirty(false);
+		}
+		dirtyTiles.clear();
+		for(int a=0;a<tileChunks.length;a++)
+		{
+			if(chunkBoundsDirty[a])
+			{
+				tileChunks[a].refresh();
+				chunkBoundsDirty[a] = false;
+			}
+		}
+	}
+	
+	//textures that no longer fit into the atlas fall back to the default grass, which is packed first
+	private TextureAtlas.Region getTileRegion(Tile t)
+	{
+		TextureAtlas.Region region = tileAtlas.add(t.getTextureName(), t.getTexture());
+		if(region == null)
+		{
+			region = tileAtlas.getRegion(Tile.TEXTURE);
+		}
+		return region;
+	}
+	
+	//walls depend on the positions of both their tiles, there are few of them so they are rebuilt together
+	private void bakeWalls()
+	{
+		Mesh.Builder builder = new Mesh.Builder(walls.size() * wallMesh.getNumVertices(), walls.size() * wallMesh.getNumIndices());
 		Transformation tf = new Transformation();
 		Vector4f pos = new Vector4f(0, 0, 0, 1);
-		tf.setScale(tileLength, tileLength, tileLength);
+		Vector4f vertex = new Vector4f(0, 0, 0, 1);
+		float[] wallTexCoords = wallMesh.getTexCoords();
 		
 		for(Tile[] wall : walls)
 		{
@@ -287,8 +486,22 @@ public class Kube
 			pos.setXYZW((pos1.getX() + pos2.getX()) / 2.f, (pos1.getY() + pos2.getY()) / 2.f, 
 					(pos1.getZ() + pos2.getZ()) / 2.f, 1.f);
 			tf.setPosition(pos);
-			wallMesh.draw(render, viewProjection, tf.getTransformation(), grass);
+			Matrix4f model = tf.getTransformation();
+
+			int base = builder.getNumVertices();
+			for(int a=0;a<wallMesh.getNumVertices();a++)
+			{
+				model.transformInto(wallMesh.getPositions(), a * Mesh.POSITION_SIZE, vertex);
+				builder.addVertex(vertex.getX(), vertex.getY(), vertex.getZ(), vertex.getW(),
+						wallTexCoords[a * Mesh.TEXCOORD_SIZE], wallTexCoords[a * Mesh.TEXCOORD_SIZE + 1]);
+			}
+			for(int a=0;a<wallMesh.getNumIndices();a++)
+			{
+				builder.addIndex(base + wallMesh.getIndex(a));
+			}
 		}
+		wallBatch = builder.setCullMode(wallMesh.getCullMode()).build();
+		wallsDirty = false;
 	}
 	
 	private Matrix4f getRelativeRotation(int relativeFace)
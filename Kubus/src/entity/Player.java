@@ -1,14 +1,10 @@
 package entity;
 
-import java.io.IOException;
-import java.util.ArrayList;
-
-import graphics.Bitmap;
 import graphics.Matrix4f;
 import graphics.Mesh;
 import graphics.Renderer;
+import graphics.TextureCache;
 import graphics.Vector4f;
-import graphics.Vertex;
 
 public class Player extends Entity
 {
@@ -19,7 +15,8 @@ public class Player extends Entity
 	private int currentFace;
 	private Kube map;
 	private int curX, curY;
-	private static Bitmap solidColor;
+	private static final String TEXTURE = "res/whale.jpg";
+	private static final TextureCache.Handle texture = TextureCache.getShared().getHandle(TEXTURE);
 	
 	
 		private boolean isMoving;
@@ -30,25 +27,16 @@ public class Player extends Entity
 		
 	static
 	{
-		ArrayList<Vertex> vertices = new ArrayList<Vertex>();
-		ArrayList<Integer> indices = new ArrayList<Integer>();
+		Mesh.Builder builder = new Mesh.Builder();
 
-		vertices.add(new Vertex(new Vector4f(-0.3f, 0, 0, 1), new Vector4f(0, 0, 0, 0)));
-		vertices.add(new Vertex(new Vector4f(0.3f, 0, 0, 1), new Vector4f(0, 1, 0, 0)));
-		vertices.add(new Vertex(new Vector4f(0, 4.45f, 0, 1), new Vector4f(0.5f, 0.5f, 0, 0)));
+		builder.addVertex(-0.3f, 0, 0, 0, 0);
+		builder.addVertex(0.3f, 0, 0, 0, 1);
+		builder.addVertex(0, 4.45f, 0, 0.5f, 0.5f);
 
-		indices.add(0);
-		indices.add(1);
-		indices.add(2);
-		
-		entMesh = new Mesh(vertices, indices);
+		builder.addTriangle(0, 1, 2);
 		
-		try {
-			solidColor = new Bitmap("res/whale.jpg");
-		} catch (IOException e) {
-			solidColor = new Bitmap(1, 1);
-			e.printStackTrace();
-		}
+		//flat sprite, visible from both sides
+		entMesh = builder.setCullMode(Renderer.CULL_NONE).build();
 	}
 	
 	public Player(int startFace, int startX, int startY, Kube map) 
@@ -59,7 +47,10 @@ public class Player extends Entity
 		curX = startX;
 		curY = startY;
 		setPosition(map.getTilePosition(startFace, startX, startY));
+		savePreviousPosition();
 
+		//positions are relative to the cube, so the player follows it when it moves
+		renderTransform.setParent(map.getTransform());
 		renderTransform.setScale(map.getTileLength(), map.getTileLength(), map.getTileLength());
 	}
 	
@@ -67,7 +58,7 @@ public class Player extends Entity
 	public void render(Renderer r, Matrix4f viewProjection)
 	{
 		super.render(r, viewProjection);
-		entMesh.draw(r, viewProjection, renderTransform.getTransformation(), solidColor);
+		entMesh.draw(r, viewProjection, renderTransform.getTransformation(), texture.get());
 	}
 	
 	public void takeHealth(double amount)
@@ -160,6 +151,8 @@ public class Player extends Entity
 		Tile t = map.getNearestTile(currentFace, curX + dx, curY + dy);
 		currentFace = t.getFace();
 		this.setPosition(t.getPosition());
+		//jumping to another face is not interpolated
+		savePreviousPosition();
 		curX = t.getXIndex();
 		curY = t.getYIndex();
 		renderTransform.setRotation(map.getFaceRotation(currentFace));
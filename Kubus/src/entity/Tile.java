@@ -4,11 +4,9 @@ import graphics.Bitmap;
 import graphics.Matrix4f;
 import graphics.Mesh;
 import graphics.Renderer;
+import graphics.TextureCache;
+import graphics.Transformation;
 import graphics.Vector4f;
-import graphics.Vertex;
-
-import java.io.IOException;
-import java.util.ArrayList;
 
 import terrain.Terrain;
 
@@ -24,34 +22,33 @@ public class Tile extends Entity
 	private int tileXIndex;
 	private int tileYIndex;
 	private int face;
+	//chunk of the cube's baked geometry this tile is in, and its first vertex there
+	private int bakeChunk = -1;
+	private int bakeSlot = -1;
+	private boolean bakeDirty;
+	//version of the render transformation when the tile was last baked
+	private int bakeVersion;
+	private boolean transformWatched;
+	//part of one of the cube's walls, which are rebaked when the tile changes
+	private boolean wallTile;
 	
 	private static final Mesh squareMesh;
-	public static Bitmap solidColor;
+	public static final String TEXTURE = "res/gras.jpg";
+	private static final TextureCache.Handle texture = TextureCache.getShared().getHandle(TEXTURE);
 	
 	static
 	{
-		ArrayList<Vertex> vertices = new ArrayList<Vertex>();
-		ArrayList<Integer> indices = new ArrayList<Integer>();
-		vertices.add(new Vertex(new Vector4f(-0.5f, 0, -0.5f, 1), new Vector4f(0, 0, 0, 0)));
-		vertices.add(new Vertex(new Vector4f(-0.5f, 0, .5f, 1), new Vector4f(0, 1, 0, 0)));
-		vertices.add(new Vertex(new Vector4f(0.5f, 0, 0.5f, 1), new Vector4f(1, 1, 0, 0)));
-		vertices.add(new Vertex(new Vector4f(0.5f, 0, -0.5f, 1), new Vector4f(1, 0, 0, 0)));
+		Mesh.Builder builder = new Mesh.Builder();
+		builder.addVertex(-0.5f, 0, -0.5f, 0, 0);
+		builder.addVertex(-0.5f, 0, .5f, 0, 1);
+		builder.addVertex(0.5f, 0, 0.5f, 1, 1);
+		builder.addVertex(0.5f, 0, -0.5f, 1, 0);
 
-		indices.add(0);
-		indices.add(1);
-		indices.add(2);
-		indices.add(2);
-		indices.add(3);
-		indices.add(0);
-		
-		squareMesh = new Mesh(vertices, indices);
+		builder.addTriangle(0, 1, 2);
+		builder.addTriangle(2, 3, 0);
 		
-		try {
-			solidColor = new Bitmap("res/gras.jpg");
-		} catch (IOException e) {
-			solidColor = new Bitmap(1, 1);
-			e.printStackTrace();
-		}
+		//clockwise seen from +y, tiles are only visible from above
+		squareMesh = builder.setCullMode(Renderer.CULL_BACK).build();
 	}
 	
 	
@@ -87,7 +84,32 @@ public class Tile extends Entity
 	public void render(Renderer r, Matrix4f viewProjection)
 	{
 		super.render(r, viewProjection);
-		squareMesh.draw(r, viewProjection, renderTransform.getTransformation(), solidColor);
+		squareMesh.draw(r, viewProjection, renderTransform.getTransformation(), getTexture());
+	}
+	
+	static Mesh getMesh()
+	{
+		return squareMesh;
+	}
+	
+	//the terrain's own art if it has any, grass otherwise
+	public Bitmap getTexture()
+	{
+		if(terrain != null && terrain.getTerrainTexture() != null)
+		{
+			return terrain.getTerrainTexture();
+		}
+		return texture.get();
+	}
+	
+	//name the texture is packed under in the cube's tile atlas
+	String getTextureName()
+	{
+		if(terrain != null && terrain.getTerrainTexture() != null)
+		{
+			return "terrain:" + terrain.getTerrainType();
+		}
+		return TEXTURE;
 	}
 	
 	public boolean isPlayerOnTile(Player player)
@@ -96,30 +118,106 @@ public class Tile extends Entity
 	}
 	
 	
+	@Override
+	public void setPosition(Vector4f position)
+	{
+		super.setPosition(position);
+		cubeMap.tileChanged(this);
+	}
+	
+	//the cube is not told about changes made through the returned transformation, it compares versions instead
+	@Override
+	public Transformation getTransform()
+	{
+		if(!transformWatched)
+		{
+			transformWatched = true;
+			cubeMap.watchTransform(this);
+		}
+		return renderTransform;
+	}
+	
 	public void setTerrain(Terrain terrain)
 	{
 		this.terrain = terrain;
+		cubeMap.tileChanged(this);
 	}
 	
 	public void setHeight(int height)
 	{
 		tileHeight = height;
+		cubeMap.tileChanged(this);
 	}
 	
 	public void setXIndex(int xIndex)
 	{
-		tileXIndex = xIndex;
+		setIndex(xIndex, tileYIndex);
 	}
 	
 	public void setYIndex(int yIndex)
 	{
-		tileYIndex = yIndex;
+		setIndex(tileXIndex, yIndex);
 	}
 	
+	//the cube's grid follows, the tile keeps its position and bake chunk
 	public void setIndex(int xIndex, int yIndex)
 	{
+		int oldX = tileXIndex;
+		int oldY = tileYIndex;
 		tileXIndex = xIndex;
 		tileYIndex = yIndex;
+		cubeMap.tileMoved(this, oldX, oldY);
+		cubeMap.tileChanged(this);
+	}
+	
+	int getBakeChunk()
+	{
+		return bakeChunk;
+	}
+	
+	void setBakeChunk(int chunk)
+	{
+		bakeChunk = chunk;
+	}
+	
+	int getBakeSlot()
+	{
+		return bakeSlot;
+	}
+	
+	void setBakeSlot(int slot)
+	{
+		bakeSlot = slot;
+	}
+	
+	boolean isBakeDirty()
+	{
+		return bakeDirty;
+	}
+	
+	void setBakeDirty(boolean dirty)
+	{
+		bakeDirty = dirty;
+	}
+	
+	int getBakeVersion()
+	{
+		return bakeVersion;
+	}
+	
+	void setBakeVersion(int version)
+	{
+		bakeVersion = version;
+	}
+	
+	boolean isWallTile()
+	{
+		return wallTile;
+	}
+	
+	void setWallTile(boolean wallTile)
+	{
+		this.wallTile = wallTile;
 	}
 	
 	public int getHeight()
@@ -0,0 +1,166 @@
+package game;
+
+//runs the simulation at a fixed tick rate measured with System.nanoTime and renders as often as the frame cap allows
+//render gets how far time has moved past the last tick, in ticks, so it can interpolate between the last two states
+//with a frame cap frames start on a fixed grid of deadlines, like vsync, instead of sleeping a fixed time after each
+public class GameLoop
+{
+	public interface Game
+	{
+		//advances the simulation by exactly dt seconds
+		void tick(float dt);
+
+		//alpha in 0..1, 0 shows the previous tick and 1 the latest one
+		void render(float alpha);
+	}
+
+	//a frame runs at most this many ticks, after a stall the rest of the backlog is dropped instead of caught up
+	public static final int MAX_TICKS_PER_FRAME = 5;
+	//Thread.sleep overshoots by up to about a millisecond, the last part of a wait is spent yielding instead
+	private static final long SPIN_NANOS = 1500000;
+	private static final long SECOND = 1000000000L;
+
+	private final Game game;
+	private final long tickNanos;
+	private final float tickSeconds;
+	//0 renders as fast as possible
+	private long frameNanos;
+	private volatile boolean running;
+	private int ticksPerSecond;
+	private int framesPerSecond;
+	private long droppedNanos;
+
+	public GameLoop(Game game, int tickRate)
+	{
+		if(tickRate <= 0)
+		{
+			throw new IllegalArgumentException("tick rate must be positive, got " + tickRate);
+		}
+		this.game = game;
+		tickNanos = SECOND / tickRate;
+		tickSeconds = tickNanos / (float)SECOND;
+	}
+
+	//frames per second, 0 for no cap
+	public void setFrameCap(int fps)
+	{
+		if(fps < 0)
+		{
+			throw new IllegalArgumentException("frame cap must not be negative, got " + fps);
+		}
+		frameNanos = fps == 0 ? 0 : SECOND / fps;
+	}
+
+	public int getFrameCap()
+	{
+		return frameNanos == 0 ? 0 : (int)(SECOND / frameNanos);
+	}
+
+	public float getTickSeconds()
+	{
+		return tickSeconds;
+	}
+
+	//both measured over the last whole second
+	public int getTicksPerSecond()
+	{
+		return ticksPerSecond;
+	}
+
+	public int getFramesPerSecond()
+	{
+		return framesPerSecond;
+	}
+
+	//simulation time skipped because ticks could not keep up
+	public long getDroppedNanos()
+	{
+		return droppedNanos;
+	}
+
+	public void stop()
+	{
+		running = false;
+	}
+
+	public void run()
+	{
+		running = true;
+		long previous = System.nanoTime();
+		long lag = 0;
+		long nextFrame = previous;
+		long secondStart = previous;
+		int ticks = 0;
+		int frames = 0;
+
+		while(running)
+		{
+			long now = System.nanoTime();
+			lag += now - previous;
+			previous = now;
+
+			for(int a=0;a<MAX_TICKS_PER_FRAME && lag >= tickNanos;a++)
+			{
+				game.tick(tickSeconds);
+				lag -= tickNanos;
+				ticks++;
+			}
+			if(lag >= tickNanos)
+			{
+				droppedNanos += lag - lag % tickNanos;
+				lag %= tickNanos;
+			}
+
+			game.render(lag / (float)tickNanos);
+			frames++;
+
+			if(now - secondStart >= SECOND)
+			{
+				ticksPerSecond = ticks;
+				framesPerSecond = frames;
+				ticks = 0;
+				frames = 0;
+				secondStart += SECOND * ((now - secondStart) / SECOND);
+			}
+
+			if(frameNanos > 0)
+			{
+				nextFrame += frameNanos;
+				long late = System.nanoTime() - nextFrame;
+				if(late > 0)
+				{
+					//missed the deadline, start a new grid rather than rushing the following frames
+					nextFrame += late;
+				}
+				waitUntil(nextFrame);
+			}
+		}
+	}
+
+	private static void waitUntil(long deadline)
+	{
+		while(true)
+		{
+			long remaining = deadline - System.nanoTime();
+			if(remaining <= 0)
+			{
+				return;
+			}
+			if(remaining > SPIN_NANOS)
+			{
+				try
+				{
+					Thread.sleep((remaining - SPIN_NANOS) / 1000000);
+				} catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			else
+			{
+				Thread.yield();
+			}
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package game;
+
+import graphics.Camera;
+import graphics.FrameProfiler;
+import graphics.RenderStats;
+import graphics.Renderer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+//renders the benchmark scene into an offscreen Renderer for a fixed number of frames, without any window
+//the renderer is set up from the same kubus.* properties as the game, the camera path is the same on every run,
+//so the printed checksum only changes when the rendered pixels do
+//every dumpEvery-th frame is written to dumpDir as a PNG if a directory is given
+//with kubus.profile the mean time of every pipeline stage is printed too, kubus.overlay draws it into the frames
+//usage: Headless [frames] [faceLength] [width] [height] [dumpDir] [dumpEvery]
+public class Headless
+{
+	public static void main(String[] args) throws IOException
+	{
+		//image encoding needs no display, make sure nothing tries to open one
+		System.setProperty("java.awt.headless", "true");
+
+		int frames = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		int faceLength = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int width = args.length > 2 ? Integer.parseInt(args[2]) : 900;
+		int height = args.length > 3 ? Integer.parseInt(args[3]) : 900;
+		File dumpDir = args.length > 4 ? new File(args[4]) : null;
+		int dumpEvery = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+		int warmup = Integer.getInteger("kubus.warmup", 30);
+
+		if(frames < 1 || dumpEvery < 1)
+		{
+			throw new IllegalArgumentException("frames and dumpEvery must be at least 1");
+		}
+		if(dumpDir != null && !dumpDir.isDirectory() && !dumpDir.mkdirs())
+		{
+			throw new IOException("cannot create " + dumpDir);
+		}
+
+		RasterBenchmark scene = new RasterBenchmark(faceLength);
+		Renderer f = new Renderer(width, height);
+		KubusMain.configure(f);
+		FrameProfiler profiler = KubusMain.createProfiler(f);
+
+		//warm up on the same path so the timed frames run compiled code, then start over
+		Camera c = RasterBenchmark.createCamera(f);
+		float interpAmt = 0;
+		for(int a=0;a<warmup;a++)
+		{
+			interpAmt = RasterBenchmark.step(c, interpAmt);
+			scene.render(f, c);
+		}
+
+		c = RasterBenchmark.createCamera(f);
+		interpAmt = 0;
+		long[] times = new long[frames];
+		int checksum = 1;
+		BufferedImage image = dumpDir != null ? new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB) : null;
+		int dumped = 0;
+		long[] stageTotals = new long[RenderStats.STAGES];
+
+		for(int a=0;a<frames;a++)
+		{
+			interpAmt = RasterBenchmark.step(c, interpAmt);
+			profiler.beginFrame();
+			long start = System.nanoTime();
+			scene.render(f, c);
+			times[a] = System.nanoTime() - start;
+			profiler.endFrame();
+			for(int s=0;s<RenderStats.STAGES;s++)
+			{
+				stageTotals[s] += f.getStats().getStageNanos(s);
+			}
+			checksum = 31 * checksum + Arrays.hashCode(f.getPixels());
+
+			if(image != null && a % dumpEvery == 0)
+			{
+				image.setRGB(0, 0, width, height, f.getPixels(), 0, width);
+				ImageIO.write(image, "png", new File(dumpDir, String.format("frame%05d.png", a)));
+				dumped++;
+			}
+		}
+
+		long total = 0;
+		for(int a=0;a<frames;a++)
+		{
+			total += times[a];
+		}
+		long[] sorted = times.clone();
+		Arrays.sort(sorted);
+
+		System.out.printf("%d frames %dx%d, face length %d, %d warm-up%n", frames, width, height, faceLength, warmup);
+		System.out.printf("mean %8.3f ms  median %8.3f ms  p95 %8.3f ms  p99 %8.3f ms  min %8.3f ms  max %8.3f ms%n",
+				total / 1e6 / frames, percentile(sorted, 0.5) / 1e6, percentile(sorted, 0.95) / 1e6,
+				percentile(sorted, 0.99) / 1e6, sorted[0] / 1e6, sorted[frames - 1] / 1e6);
+		System.out.printf("%.1f frames/s  checksum %08x%n", frames * 1e9 / total, checksum);
+		if(f.isProfiling())
+		{
+			System.out.print("stages");
+			for(int s=0;s<RenderStats.STAGES;s++)
+			{
+				System.out.printf("  %s %.3f ms", RenderStats.getStageName(s), stageTotals[s] / 1e6 / frames);
+			}
+			System.out.println();
+		}
+		System.out.println("last frame: " + f.getStats());
+		if(dumpDir != null)
+		{
+			System.out.println(dumped + " frames written to " + dumpDir);
+		}
+		System.exit(0);
+	}
+
+	//nearest rank of sorted values
+	private static long percentile(long[] sorted, double p)
+	{
+		int index = (int)Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+}
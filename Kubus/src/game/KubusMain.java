@@ -6,17 +6,37 @@ import entity.Player;
 import entity.Tile;
 import graphics.Camera;
 import graphics.Display;
+import graphics.FrameProfiler;
 import graphics.Matrix4f;
 import graphics.Renderer;
+import graphics.Sampler;
+import graphics.TextureCache;
 import graphics.Vector4f;
 import input.KeyInput;
 
 
 public class KubusMain
 {
+	//the camera circles the cube at a fixed rate, SPIN_SPEED per second up to SPIN_TOTAL
+	private static final Vector4f SPIN_CENTER = new Vector4f(0, 0, 0, 0);
+	private static final Vector4f SPIN_AXIS = new Vector4f(0, 0, 1, 0);
+	private static final float SPIN_SPEED = 30000;
+	private static final float SPIN_TOTAL = (float)Math.PI / 2 * 10000;
+	
 	private EntityManager manager;
+	//simulated camera, its state one tick earlier and the interpolated one that is drawn
 	private Camera c;
+	private Camera previousCamera;
+	private Camera renderCamera;
+	private float spinAmount;
+	private float lastSpin;
+	private Player pl;
 	private KeyInput input;
+	private GameLoop loop;
+	private boolean printStats;
+	private long lastStatsTime;
+	private FrameProfiler profiler;
+	private boolean overlayKeyDown;
 
 	private Kube kube = new Kube(5, .3f);
 	
@@ -31,12 +51,52 @@ public class KubusMain
 		new KubusMain().mainLoop();
 	}
 	
+	//applies the kubus.* renderer properties, shared with the headless runner and the benchmarks
+	public static void configure(Renderer f)
+	{
+		int threads = Integer.getInteger("kubus.threads", 1);
+		if(threads > 1)
+		{
+			f.setThreadCount(threads);
+			f.setBinning(true);
+		}
+		if("fixed".equals(System.getProperty("kubus.raster")))
+		{
+			f.setRasterMode(Renderer.RASTER_FIXED);
+		}
+		else if("halfspace".equals(System.getProperty("kubus.raster")))
+		{
+			f.setRasterMode(Renderer.RASTER_HALFSPACE);
+		}
+		f.setGuardBand(Float.parseFloat(System.getProperty("kubus.guardband", "1")));
+		f.setOcclusionCulling(Boolean.getBoolean("kubus.hiz"));
+		f.setFrustumCulling(!"false".equals(System.getProperty("kubus.frustumcull")));
+		f.setDepthTagging(Boolean.getBoolean("kubus.depthtags"));
+		f.setColorClear(!"false".equals(System.getProperty("kubus.colorclear")));
+		String filter = System.getProperty("kubus.filter", "direct");
+		if(filter.equals("nearest"))
+		{
+			f.setTextureFilter(Sampler.NEAREST);
+		}
+		else if(filter.equals("bilinear"))
+		{
+			f.setTextureFilter(Sampler.BILINEAR);
+		}
+		else if(filter.equals("trilinear"))
+		{
+			f.setTextureFilter(Sampler.TRILINEAR);
+		}
+		f.setSpanBatching(Boolean.getBoolean("kubus.simd"));
+		f.setPerspectiveStep(Integer.getInteger("kubus.perspectivestep", 1));
+	}
+	
 	public void mainLoop()
 	{
-		Display w = new Display(900, 900, "wee");
+		Display w = new Display(900, 900, "wee", Integer.getInteger("kubus.buffers", 1), Boolean.getBoolean("kubus.asyncpresent"));
 		w.setVisible(true);
 		w.addKeyListener(input);
 		Renderer f = w.getFrameBuffer();
+		configure(f);
 		
 		for(int a=1;a<=6;a++)
 		{
@@ -50,59 +110,115 @@ public class KubusMain
 		}
 		
 		
-		c = new Camera(new Matrix4f().initPerspective((float)Math.toRadians(70.0f),
-			   	(float)f.getWidth()/(float)f.getHeight(), 0.1f, 1000.0f));
+		Matrix4f projection = new Matrix4f().initPerspective((float)Math.toRadians(70.0f),
+			   	(float)f.getWidth()/(float)f.getHeight(), 0.1f, 1000.0f);
+		c = new Camera(projection);
 		c.setPosition(new Vector4f(1.5f, 1.5f, 1.5f, 1));
 	
-		float p = (float) (Math.PI);
-		float interpAmt = 0;
 		c.setRotation(new Vector4f(-2, -2, -2, 0), new Vector4f(-2, 2, -2, 0), 0);
-		Player pl = new Player(Kube.TOP, 0, 0, kube);
-		float dt = 0;
-		long lastTime = System.currentTimeMillis();
+		pl = new Player(Kube.TOP, 0, 0, kube);
 		kube.addWall(kube.getTileAt(1, 3, 4), kube.getTileAt(1, 4, 4));
-		while(true)
+		previousCamera = new Camera(projection);
+		previousCamera.set(c);
+		renderCamera = new Camera(projection);
+		
+		final Renderer frameBuffer = f;
+		final Display display = w;
+		printStats = Boolean.getBoolean("kubus.stats");
+		lastStatsTime = System.nanoTime();
+		profiler = createProfiler(f);
+		loop = new GameLoop(new GameLoop.Game()
 		{
-			interpAmt = c.spinAroundPoint(new Vector4f(0, 0, 0, 0), new Vector4f(0, 0, 1, 0), dt * 30000, interpAmt, p / 2 * 10000);
-			dt = (float)(System.currentTimeMillis() - lastTime) / 1000.f;
-			lastTime = System.currentTimeMillis();
-			if(pl.isMovingToNextTile())
+			@Override
+			public void tick(float dt)
 			{
-				pl.moveTick(dt);
+				KubusMain.this.tick(dt);
 			}
-			else
+			
+			@Override
+			public void render(float alpha)
 			{
-				if(input.isKeyDown(KeyInput.LEFT_ARROW))
-				{
-					pl.move(1, 0);
-				}
-				else if(input.isKeyDown(KeyInput.RIGHT_ARROW))
-				{
-					pl.move(-1, 0);
-				}
-				else if(input.isKeyDown(KeyInput.UP_ARROW))
-				{
-					pl.move(0, -1);
-				}
-				else if(input.isKeyDown(KeyInput.DOWN_ARROW))
-				{
-					pl.move(0, 1);
-				}
+				KubusMain.this.render(frameBuffer, alpha);
+				display.swap();
 			}
-			
-			f.fill((byte)0);
-			f.clearDepthBuffer();
-			kube.renderFaces(f, c.getViewProjection());
-			pl.render(f, c.getViewProjection());
-			w.swap();
-			try
+		}, Integer.getInteger("kubus.tickrate", 60));
+		loop.setFrameCap(Integer.getInteger("kubus.fps", 60));
+		loop.run();
+	}
+	
+	//kubus.profile times every stage and records frames, kubus.overlay starts with the overlay shown, F3 toggles it
+	public static FrameProfiler createProfiler(Renderer f)
+	{
+		FrameProfiler profiler = new FrameProfiler(f);
+		profiler.setEnabled(Boolean.getBoolean("kubus.profile"));
+		profiler.setOverlay(Boolean.getBoolean("kubus.overlay"));
+		return profiler;
+	}
+	
+	private void tick(float dt)
+	{
+		//the camera spins at a constant rate per tick, render() replays a fraction of the last step
+		previousCamera.set(c);
+		float before = spinAmount;
+		spinAmount = c.spinAroundPoint(SPIN_CENTER, SPIN_AXIS, dt * SPIN_SPEED, spinAmount, SPIN_TOTAL);
+		lastSpin = spinAmount - before;
+		
+		boolean overlayKey = input.isKeyDown(KeyInput.F3);
+		if(overlayKey && !overlayKeyDown)
+		{
+			profiler.setOverlay(!profiler.isOverlay());
+		}
+		overlayKeyDown = overlayKey;
+		
+		pl.savePreviousPosition();
+		if(pl.isMovingToNextTile())
+		{
+			pl.moveTick(dt);
+		}
+		else
+		{
+			if(input.isKeyDown(KeyInput.LEFT_ARROW))
 			{
-				Thread.sleep(5);
-			} catch (InterruptedException e) 
+				pl.move(1, 0);
+			}
+			else if(input.isKeyDown(KeyInput.RIGHT_ARROW))
+			{
+				pl.move(-1, 0);
+			}
+			else if(input.isKeyDown(KeyInput.UP_ARROW))
 			{
-				e.printStackTrace();
+				pl.move(0, -1);
+			}
+			else if(input.isKeyDown(KeyInput.DOWN_ARROW))
+			{
+				pl.move(0, 1);
 			}
 		}
+	}
+	
+	private void render(Renderer f, float alpha)
+	{
+		renderCamera.set(previousCamera);
+		if(lastSpin != 0)
+		{
+			renderCamera.spinAroundPoint(SPIN_CENTER, SPIN_AXIS, lastSpin * alpha, 0, Float.MAX_VALUE);
+		}
+		pl.interpolate(alpha);
 		
+		profiler.beginFrame();
+		f.clear();
+		Matrix4f viewProjection = renderCamera.getViewProjection();
+		kube.renderFaces(f, viewProjection);
+		pl.render(f, viewProjection);
+		f.flush();
+		profiler.endFrame();
+		
+		long now = System.nanoTime();
+		if(printStats && now - lastStatsTime >= 1000000000L)
+		{
+			System.out.println("fps " + loop.getFramesPerSecond() + " ticks " + loop.getTicksPerSecond() + " " + profiler.getLastFrame());
+			System.out.println(TextureCache.getShared());
+			lastStatsTime = now;
+		}
 	}
 }
@@ -0,0 +1,196 @@
+package game;
+
+import entity.Kube;
+import entity.Player;
+import entity.Tile;
+import graphics.Camera;
+import graphics.Matrix4f;
+import graphics.Renderer;
+import graphics.Vector4f;
+
+import java.util.Arrays;
+
+//renders the spinning cube offscreen with the scanline path, the half-space path, the fixed point path and then with the
+//tile binned path on 1..N threads, printing frame times and whether every frame matched the scanline path
+//spans cut by a tile border are prestepped directly, so binned frames can be off by a rounding step there
+//subdivided perspective spans are timed too, together with how far they are from the exact image
+//the scene and camera path are shared with Headless
+//usage: RasterBenchmark [frames] [faceLength] [maxThreads]
+public class RasterBenchmark
+{
+	private static final int WIDTH = 900;
+	private static final int HEIGHT = 900;
+	private static final float FRAME_DT = 1.f / 60.f;
+
+	private Kube kube;
+	private Player player;
+
+	public RasterBenchmark(int faceLength)
+	{
+		kube = new Kube(faceLength, 1.5f / faceLength);
+		for(int a=1;a<=6;a++)
+		{
+			for(int x=0;x<faceLength;x++)
+			{
+				for(int y=0;y<faceLength;y++)
+				{
+					new Tile(x, y, 0, null, kube, a);
+				}
+			}
+		}
+		player = new Player(Kube.TOP, 0, 0, kube);
+	}
+
+	static Camera createCamera(Renderer f)
+	{
+		Camera c = new Camera(new Matrix4f().initPerspective((float)Math.toRadians(70.0f),
+				(float)f.getWidth()/(float)f.getHeight(), 0.1f, 1000.0f));
+		c.setPosition(new Vector4f(1.5f, 1.5f, 1.5f, 1));
+		c.setRotation(new Vector4f(-2, -2, -2, 0), new Vector4f(-2, 2, -2, 0), 0);
+		return c;
+	}
+
+	static float step(Camera c, float interpAmt)
+	{
+		float p = (float) (Math.PI);
+		return c.spinAroundPoint(new Vector4f(0, 0, 0, 0), new Vector4f(0, 0, 1, 0), FRAME_DT * 30000, interpAmt, p / 2 * 10000);
+	}
+
+	void render(Renderer f, Camera c)
+	{
+		f.clear();
+		Matrix4f viewProjection = c.getViewProjection();
+		kube.renderFaces(f, viewProjection);
+		player.render(f, viewProjection);
+		f.flush();
+	}
+
+	//returns total nanoseconds, fills in a hash per frame
+	public long run(Renderer f, int frames, int[] hashes)
+	{
+		Camera c = createCamera(f);
+		float interpAmt = 0;
+		long total = 0;
+
+		for(int a=0;a<frames;a++)
+		{
+			interpAmt = step(c, interpAmt);
+
+			long start = System.nanoTime();
+			render(f, c);
+			total += System.nanoTime() - start;
+
+			hashes[a] = Arrays.hashCode(f.getPixels());
+		}
+		return total;
+	}
+
+	//renders every frame into both renderers and compares them per color channel
+	//returns {mean absolute error, max error, psnr in dB, fraction of pixels that differ}
+	public double[] compare(Renderer reference, Renderer test, int frames)
+	{
+		Camera c = createCamera(reference);
+		float interpAmt = 0;
+		long sumAbs = 0;
+		double sumSquared = 0;
+		int maxError = 0;
+		long differing = 0;
+		long samples = 0;
+
+		for(int a=0;a<frames;a++)
+		{
+			interpAmt = step(c, interpAmt);
+			render(reference, c);
+			render(test, c);
+
+			int[] expected = reference.getPixels();
+			int[] actual = test.getPixels();
+			for(int i=0;i<reference.getWidth() * reference.getHeight();i++)
+			{
+				if(expected[i] == actual[i])
+				{
+					continue;
+				}
+				differing++;
+				for(int shift=0;shift<24;shift+=8)
+				{
+					int error = Math.abs(((expected[i] >> shift) & 0xFF) - ((actual[i] >> shift) & 0xFF));
+					sumAbs += error;
+					sumSquared += error * error;
+					maxError = Math.max(maxError, error);
+				}
+			}
+			samples += reference.getWidth() * reference.getHeight();
+		}
+
+		double mse = sumSquared / (samples * 3);
+		double psnr = mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255.0 * 255.0 / mse);
+		return new double[] { (double)sumAbs / (samples * 3), maxError, psnr, (double)differing / samples };
+	}
+
+	public static void main(String[] args)
+	{
+		int frames = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		int faceLength = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		RasterBenchmark bench = new RasterBenchmark(faceLength);
+		int[] reference = new int[frames];
+		int[] hashes = new int[frames];
+
+		Renderer scan = new Renderer(WIDTH, HEIGHT);
+		bench.run(scan, frames, reference);
+		long scanTime = bench.run(scan, frames, reference);
+		System.out.printf("scanline        %8.3f ms/frame%n", scanTime / 1e6 / frames);
+
+		Renderer halfSpace = new Renderer(WIDTH, HEIGHT);
+		halfSpace.setRasterMode(Renderer.RASTER_HALFSPACE);
+		bench.run(halfSpace, frames, hashes);
+		long halfSpaceTime = bench.run(halfSpace, frames, hashes);
+		System.out.printf("halfspace       %8.3f ms/frame  speedup %.2fx%n", halfSpaceTime / 1e6 / frames,
+				(double)scanTime / halfSpaceTime);
+
+		Renderer fixed = new Renderer(WIDTH, HEIGHT);
+		fixed.setRasterMode(Renderer.RASTER_FIXED);
+		bench.run(fixed, frames, hashes);
+		long fixedTime = bench.run(fixed, frames, hashes);
+		System.out.printf("fixed point     %8.3f ms/frame  speedup %.2fx%n", fixedTime / 1e6 / frames,
+				(double)scanTime / fixedTime);
+
+		Renderer batched = new Renderer(WIDTH, HEIGHT);
+		batched.setSpanBatching(true);
+		bench.run(batched, frames, hashes);
+		long batchedTime = bench.run(batched, frames, hashes);
+		double[] batchedError = bench.compare(scan, batched, frames);
+		System.out.printf("spans %-9s %8.3f ms/frame  speedup %.2fx  mean err %.4f  %.2f%% px differ%n", Renderer.getSpanBackend(),
+				batchedTime / 1e6 / frames, (double)scanTime / batchedTime, batchedError[0], batchedError[3] * 100);
+
+		for(int step = 8; step <= 16; step *= 2)
+		{
+			Renderer affine = new Renderer(WIDTH, HEIGHT);
+			affine.setPerspectiveStep(step);
+			bench.run(affine, frames, hashes);
+			long time = bench.run(affine, frames, hashes);
+			double[] error = bench.compare(scan, affine, frames);
+			System.out.printf("perspective/%-3d %8.3f ms/frame  speedup %.2fx  mean err %.4f  max err %.0f  psnr %.1f dB  %.2f%% px differ%n",
+					step, time / 1e6 / frames, (double)scanTime / time, error[0], error[1], error[2], error[3] * 100);
+		}
+
+		for(int threads = 1; threads <= maxThreads; threads++)
+		{
+			Renderer binned = new Renderer(WIDTH, HEIGHT);
+			binned.setThreadCount(threads);
+			binned.setBinning(true);
+			bench.run(binned, frames, hashes);
+			long time = bench.run(binned, frames, hashes);
+			String match = "identical";
+			if(!Arrays.equals(reference, hashes))
+			{
+				match = String.format("%.4f%% px differ", bench.compare(scan, binned, frames)[3] * 100);
+			}
+			System.out.printf("binned %2d thr   %8.3f ms/frame  speedup %.2fx  %s%n", threads, time / 1e6 / frames,
+					(double)scanTime / time, match);
+		}
+		System.exit(0);
+	}
+}
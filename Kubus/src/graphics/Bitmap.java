@@ -3,20 +3,34 @@ package graphics;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 import javax.imageio.ImageIO;
 
+//pixels are packed 0xAARRGGBB ints so a frame buffer can alias a TYPE_INT_RGB image directly
 public class Bitmap 
 {
 	private final int w;
 	private final int h;
-	private final byte[] pixels;
+	private int[] pixels;
+	//level 0 is this bitmap, null until buildMipmaps() is called
+	private Bitmap[] mipLevels;
 
 	public Bitmap(int w, int h)
 	{
+		this(w, h, new int[w * h]);
+	}
+
+	//wraps an existing pixel array, e.g. the DataBufferInt of a BufferedImage
+	public Bitmap(int w, int h, int[] pixels)
+	{
+		if(pixels.length < w * h)
+		{
+			throw new IllegalArgumentException("pixel array too small for " + w + "x" + h);
+		}
 		this.w = w;
 		this.h= h;
-		this.pixels = new byte[w * h * 4];
+		this.pixels = pixels;
 	}
 	
 	public Bitmap(String fileName) throws IOException
@@ -25,26 +39,84 @@ public class Bitmap
 		w = i.getWidth();
 		h = i.getHeight();
 		
-		int[] pixelInt = new int[w * h];
-		i.getRGB(0,  0, w, h, pixelInt, 0, w);
-		pixels = new byte[w * h * 4];
-		for(int a=0;a<w * h;a++)
+		pixels = new int[w * h];
+		i.getRGB(0,  0, w, h, pixels, 0, w);
+		buildMipmaps();
+	}
+
+	//points the bitmap at another array of the same size, used to rotate frame buffers
+	protected void setPixels(int[] pixels)
+	{
+		if(pixels.length < w * h)
+		{
+			throw new IllegalArgumentException("pixel array too small for " + w + "x" + h);
+		}
+		this.pixels = pixels;
+	}
+	
+	//box filters down to 1x1, odd sizes round down and repeat their last row/column
+	public void buildMipmaps()
+	{
+		int levels = 1;
+		for(int lw = w, lh = h; lw > 1 || lh > 1; lw = Math.max(1, lw / 2), lh = Math.max(1, lh / 2))
+		{
+			levels++;
+		}
+		mipLevels = new Bitmap[levels];
+		mipLevels[0] = this;
+
+		for(int l=1;l<levels;l++)
 		{
-			int pixel = pixelInt[a];
+			Bitmap src = mipLevels[l - 1];
+			int sw = src.getWidth();
+			int sh = src.getHeight();
+			Bitmap dest = new Bitmap(Math.max(1, sw / 2), Math.max(1, sh / 2));
 
-			pixels[a * 4] = (byte)((pixel >> 24) & 0xFF);
-			pixels[a * 4 + 1] = (byte)((pixel) & 0xFF);
-			pixels[a * 4 + 2] = (byte)((pixel >> 8) & 0xFF);
-			pixels[a * 4 + 3] = (byte)((pixel >> 16) & 0xFF);
+			for(int y=0;y<dest.h;y++)
+			{
+				int y0 = Math.min(y * 2, sh - 1) * sw;
+				int y1 = Math.min(y * 2 + 1, sh - 1) * sw;
+				for(int x=0;x<dest.w;x++)
+				{
+					int x0 = Math.min(x * 2, sw - 1);
+					int x1 = Math.min(x * 2 + 1, sw - 1);
+					dest.pixels[x + y * dest.w] = average(src.pixels[x0 + y0], src.pixels[x1 + y0],
+							src.pixels[x0 + y1], src.pixels[x1 + y1]);
+				}
+			}
+			mipLevels[l] = dest;
 		}
 	}
 
-	public void fill(byte bColor)
+	private static int average(int a, int b, int c, int d)
 	{
-		for(int a=0;a<w*h*4;a++)
+		int res = 0;
+		for(int shift=0;shift<32;shift+=8)
 		{
-			pixels[a] = bColor;
+			int sum = ((a >>> shift) & 0xFF) + ((b >>> shift) & 0xFF) + ((c >>> shift) & 0xFF) + ((d >>> shift) & 0xFF);
+			res |= ((sum + 2) >> 2) << shift;
 		}
+		return res;
+	}
+
+	public int getNumMipLevels()
+	{
+		return mipLevels == null ? 1 : mipLevels.length;
+	}
+
+	public Bitmap getMipLevel(int level)
+	{
+		return mipLevels == null ? this : mipLevels[level];
+	}
+
+	public boolean isPowerOfTwo()
+	{
+		return (w & (w - 1)) == 0 && (h & (h - 1)) == 0;
+	}
+
+	public void fill(byte bColor)
+	{
+		Arrays.fill(pixels, 0, w * h, (bColor & 0xFF) * 0x01010101);
 	}
 
 	public int getWidth()
@@ -56,41 +128,51 @@ public class Bitmap
 	{
 		return h;
 	}
+
+	public int[] getPixels()
+	{
+		return pixels;
+	}
+
+	public int getPixel(int idx)
+	{
+		if(idx < 0 || idx >= pixels.length)
+			return 0;
+		return pixels[idx];
+	}
 	
+	//idx addresses the components as if they were stored a, b, g, r bytes per pixel
 	public byte getByte(int idx)
 	{
-		if(idx < 0 || idx >= pixels.length)
+		if(idx < 0 || idx >= pixels.length * 4)
 			return (byte)0x00;
-		return pixels[idx];
+		int pixel = pixels[idx >> 2];
+		switch(idx & 3)
+		{
+		case 0:
+			return (byte)(pixel >> 24);
+		case 1:
+			return (byte)(pixel);
+		case 2:
+			return (byte)(pixel >> 8);
+		default:
+			return (byte)(pixel >> 16);
+		}
 	}
 	
 	public void setPixel(int x, int y, byte a, byte b, byte g, byte r)
 	{
-		int idx = (x + (y * w)) * 4;
-		pixels[idx] = a;
-		pixels[idx + 1] = b;
-		pixels[idx + 2] = g;
-		pixels[idx + 3] = r;
+		pixels[x + y * w] = ((a & 0xFF) << 24) | ((r & 0xFF) << 16) | ((g & 0xFF) << 8) | (b & 0xFF);
 	}
 	
 	public void copyPixel(int destX, int destY, int srcX, int srcY, Bitmap src)
 	{
-		int idx = (destX + (destY * w)) * 4;
-		int srcIdx = (srcX + srcY * src.getWidth()) * 4;
-		
-		pixels[idx] = src.getByte(srcIdx);
-		pixels[idx + 1] = src.getByte(srcIdx + 1);
-		pixels[idx + 2] = src.getByte(srcIdx + 2);
-		pixels[idx + 3] = src.getByte(srcIdx + 3);
+		pixels[destX + destY * w] = src.getPixel(srcX + srcY * src.getWidth());
 	}
 
 	public void setPixel(int x, int y, int abgr)
 	{
-		int idx = (x + (y * w)) * 4;
-		pixels[idx] = (byte)(abgr >> 24);
-		pixels[idx + 1] = (byte)(abgr >> 16);
-		pixels[idx + 2] = (byte)(abgr >> 8);
-		pixels[idx + 3] = (byte)(abgr);
+		pixels[x + y * w] = (abgr & 0xFF00FF00) | ((abgr >> 16) & 0xFF) | ((abgr & 0xFF) << 16);
 	}
 
 	//always opaque
@@ -99,15 +181,13 @@ public class Bitmap
 		setPixel(x, y, bgr | 0xFF000000);
 	}
 
+	//arr out is ABGR
 	public void getIntArray(int[] arr)
 	{
 		for(int a=0;a<w*h;a++)
 		{
-			arr[a] ^= arr[a];
-			arr[a] |= (pixels[a * 4]) << 24;
-			arr[a] |= (pixels[a * 4 + 1]) << 16;
-			arr[a] |= (pixels[a * 4 + 2]) << 8;
-			arr[a] |= (pixels[a * 4 + 3]);
+			int pixel = pixels[a];
+			arr[a] = (pixel & 0xFF00FF00) | ((pixel >> 16) & 0xFF) | ((pixel & 0xFF) << 16);
 		}
 	}
 
@@ -116,9 +196,10 @@ public class Bitmap
 	{
 		for(int a=0;a<w*h;a++)
 		{
-			arr[a * 3] = pixels[a * 4 + 1];
-			arr[a * 3 + 1] = pixels[a * 4 + 2];
-			arr[a * 3 + 2] = pixels[a * 4 + 3];
+			int pixel = pixels[a];
+			arr[a * 3] = (byte)(pixel);
+			arr[a * 3 + 1] = (byte)(pixel >> 8);
+			arr[a * 3 + 2] = (byte)(pixel >> 16);
 		}
 	}
 }
@@ -9,18 +9,40 @@ public class Camera
 	private Matrix4f rotation;
 	private Vector4f fwd;
 	private Vector4f axis;
+	//scratch matrices for getViewProjection
+	private Matrix4f cameraTranslation;
+	private Matrix4f viewProjection;
+	//viewProjection is rebuilt on the next get after the camera moved or turned, version counts the rebuilds
+	private boolean dirty;
+	private int version;
 
 	public Camera(Matrix4f projection)
 	{
 		this.projection = projection;
 		rotation = new Matrix4f().initRotation(new Vector4f(0, 0, 1), UP);
 		position = new Vector4f(0, 0, 0, 1);
+		cameraTranslation = new Matrix4f();
+		viewProjection = new Matrix4f();
+		dirty = true;
+	}
+	
+	//copies another camera's placement, e.g. to keep the state of the previous simulation tick
+	//fwd and axis are only ever replaced, never changed in place, so they can be shared
+	public void set(Camera other)
+	{
+		projection = other.projection;
+		setPosition(other.position);
+		rotation.set(other.rotation);
+		fwd = other.fwd;
+		axis = other.axis;
+		dirty = true;
 	}
 	
 	public void moveForward(double d)
 	{
 		Vector4f fwd = new Vector4f(rotation.get(2, 0), rotation.get(2, 1), rotation.get(2, 2), 0).normalized().mul((float)d);
 		position = position.add(fwd);
+		dirty = true;
 	}
 	
 	public Vector4f getPosition()
@@ -31,16 +53,20 @@ public class Camera
 	public void lookAt(Vector4f point)
 	{
 		rotation = new Matrix4f().initRotation(point.sub(position).normalized(), UP);
+		dirty = true;
 	}
 	
+	//the vector is copied, later changes to it are not seen, same as Transformation.setPosition
 	public void setPosition(Vector4f position)
 	{
-		this.position = position;
+		this.position = new Vector4f(position.getX(), position.getY(), position.getZ(), position.getW());
+		dirty = true;
 	}
 
 	public void setRotation(float x, float y, float z)
 	{
 		rotation.initRotation(x, y, z);
+		dirty = true;
 	}
 	
 	public void setRotation(Vector4f f, Vector4f a, float angle)
@@ -49,13 +75,28 @@ public class Camera
 		fwd = f.normalized();
 		fwd = fwd.rotate(axis, angle);
 		rotation.initRotation(fwd, axis);
+		dirty = true;
 	}
 	
+	//read only, the matrix is updated in place once the camera changes, copy it to keep an old view
 	public Matrix4f getViewProjection()
 	{
-		Matrix4f cameraTranslation = new Matrix4f().initTranslation(-position.getX(), -position.getY(), -position.getZ());
+		if(dirty)
+		{
+			cameraTranslation.initTranslation(-position.getX(), -position.getY(), -position.getZ());
 
-		return projection.mul(rotation.mul(cameraTranslation));
+			rotation.mulInto(cameraTranslation, viewProjection);
+			projection.mulInto(viewProjection, viewProjection);
+			dirty = false;
+			version++;
+		}
+		return viewProjection;
+	}
+
+	public int getVersion()
+	{
+		getViewProjection();
+		return version;
 	}
 	
 	public float spinAroundPoint(Vector4f point, Vector4f axis, float angle, float interp, float amt)
@@ -81,6 +122,7 @@ public class Camera
 		rotation.initRotation(fwd, this.axis);
 		diffVec = diffVec.rotate(axis, angle);
 		position = point.add(diffVec);
+		dirty = true;
 		return interp;
 	}
 }
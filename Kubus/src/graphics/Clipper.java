@@ -0,0 +1,135 @@
+package graphics;
+
+//sutherland-hodgman clipper working in two preallocated float buffers
+//with a guard band wider than 1 the x/y planes are pushed out to guardBand * w, anything inside
+//them is left to the rasterizer's screen scissor and only the z planes clip for real
+class Clipper
+{
+	//a triangle clipped by 6 planes has at most 9 vertices
+	public static final int MAX_VERTICES = 9;
+	private static final int STRIDE = 6;
+
+	private float[] buffer;
+	private float[] auxBuffer;
+	private Vertex[] result;
+	private float guardBand;
+
+	public Clipper()
+	{
+		buffer = new float[MAX_VERTICES * STRIDE];
+		auxBuffer = new float[MAX_VERTICES * STRIDE];
+		result = new Vertex[MAX_VERTICES];
+		for(int a=0;a<MAX_VERTICES;a++)
+		{
+			result[a] = new Vertex(new Vector4f(0, 0, 0, 0), new Vector4f(0, 0, 0, 0));
+		}
+		guardBand = 1.f;
+	}
+
+	public void setGuardBand(float guardBand)
+	{
+		this.guardBand = guardBand < 1.f ? 1.f : guardBand;
+	}
+
+	public float getGuardBand()
+	{
+		return guardBand;
+	}
+
+	//bit per plane the vertex is outside of, in order +x, -x, +y, -y, +z, -z
+	public int outcode(Vertex v)
+	{
+		float w = v.getW();
+		float gw = w * guardBand;
+		int code = 0;
+		if(v.getX() > gw) code |= 1;
+		if(-v.getX() > gw) code |= 2;
+		if(v.getY() > gw) code |= 4;
+		if(-v.getY() > gw) code |= 8;
+		if(v.getZ() > w) code |= 16;
+		if(-v.getZ() > w) code |= 32;
+		return code;
+	}
+
+	//clips against every plane set in planes, returns the vertex count of the resulting convex polygon
+	//the returned vertices are owned by the clipper and only valid until the next call
+	public int clip(Vertex v1, Vertex v2, Vertex v3, int planes)
+	{
+		store(buffer, 0, v1);
+		store(buffer, 1, v2);
+		store(buffer, 2, v3);
+		int count = 3;
+
+		for(int plane = 0; plane < 6 && count > 0; plane++)
+		{
+			if((planes & (1 << plane)) == 0)
+			{
+				continue;
+			}
+			count = clipPlane(buffer, count, auxBuffer, plane >> 1, (plane & 1) == 0 ? 1.f : -1.f,
+					plane < 4 ? guardBand : 1.f);
+
+			float[] temp = buffer;
+			buffer = auxBuffer;
+			auxBuffer = temp;
+		}
+
+		for(int a=0;a<count;a++)
+		{
+			int i = a * STRIDE;
+			result[a].getPosition().setXYZW(buffer[i], buffer[i + 1], buffer[i + 2], buffer[i + 3]);
+			result[a].getTexCoord().setXYZW(buffer[i + 4], buffer[i + 5], 0, 0);
+		}
+		return count;
+	}
+
+	public Vertex getVertex(int i)
+	{
+		return result[i];
+	}
+
+	private static void store(float[] dest, int i, Vertex v)
+	{
+		i *= STRIDE;
+		dest[i] = v.getX();
+		dest[i + 1] = v.getY();
+		dest[i + 2] = v.getZ();
+		dest[i + 3] = v.getW();
+		dest[i + 4] = v.getTexCoord().getX();
+		dest[i + 5] = v.getTexCoord().getY();
+	}
+
+	private static int clipPlane(float[] src, int count, float[] dest, int componentIndex, float componentFactor, float wScale)
+	{
+		int prev = (count - 1) * STRIDE;
+		float previousDist = wScale * src[prev + 3] - src[prev + componentIndex] * componentFactor;
+		int outCount = 0;
+
+		for(int a=0;a<count;a++)
+		{
+			int cur = a * STRIDE;
+			float currentDist = wScale * src[cur + 3] - src[cur + componentIndex] * componentFactor;
+
+			if((currentDist >= 0) ^ (previousDist >= 0))
+			{
+				float lerp = previousDist / (previousDist - currentDist);
+				int o = outCount * STRIDE;
+				for(int c=0;c<STRIDE;c++)
+				{
+					dest[o + c] = src[prev + c] + (src[cur + c] - src[prev + c]) * lerp;
+				}
+				outCount++;
+			}
+
+			if(currentDist >= 0)
+			{
+				System.arraycopy(src, cur, dest, outCount * STRIDE, STRIDE);
+				outCount++;
+			}
+
+			prev = cur;
+			previousDist = currentDist;
+		}
+		return outCount;
+	}
+}
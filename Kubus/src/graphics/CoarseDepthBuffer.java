@@ -0,0 +1,103 @@
+package graphics;
+
+import java.util.Arrays;
+
+//farthest depth of every BLOCK_SIZE x BLOCK_SIZE block of the depth buffer
+//rasterizers mark the blocks they write to and the maximum is only recomputed when a block is queried
+class CoarseDepthBuffer
+{
+	public static final int BLOCK_SHIFT = 3;
+	public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+	private final Renderer target;
+	private final float[] depthBuffer;
+	private final int width;
+	private final int height;
+	private final int blocksX;
+	private final float[] blockMax;
+	private final boolean[] dirty;
+
+	public CoarseDepthBuffer(Renderer target)
+	{
+		this.target = target;
+		depthBuffer = target.getDepthBuffer();
+		width = target.getWidth();
+		height = target.getHeight();
+		blocksX = (width + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+		int blocksY = (height + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+		blockMax = new float[blocksX * blocksY];
+		dirty = new boolean[blocksX * blocksY];
+		clear();
+	}
+
+	public void clear()
+	{
+		Arrays.fill(blockMax, Float.MAX_VALUE);
+		Arrays.fill(dirty, false);
+	}
+
+	//x1 is exclusive
+	public void markSpan(int y, int x0, int x1)
+	{
+		int row = (y >> BLOCK_SHIFT) * blocksX;
+		int end = (x1 - 1) >> BLOCK_SHIFT;
+		for(int b = x0 >> BLOCK_SHIFT; b <= end; b++)
+		{
+			dirty[row + b] = true;
+		}
+	}
+
+	public void markBlock(int x, int y)
+	{
+		dirty[(x >> BLOCK_SHIFT) + (y >> BLOCK_SHIFT) * blocksX] = true;
+	}
+
+	//true if nothing at or behind minDepth could pass the depth test anywhere in the inclusive pixel rectangle
+	public boolean isOccluded(int minX, int minY, int maxX, int maxY, float minDepth)
+	{
+		int bx0 = minX >> BLOCK_SHIFT;
+		int bx1 = maxX >> BLOCK_SHIFT;
+		int by0 = minY >> BLOCK_SHIFT;
+		int by1 = maxY >> BLOCK_SHIFT;
+
+		for(int by = by0; by <= by1; by++)
+		{
+			for(int bx = bx0; bx <= bx1; bx++)
+			{
+				if(getBlockMax(bx + by * blocksX) > minDepth)
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private float getBlockMax(int block)
+	{
+		if(dirty[block])
+		{
+			int x0 = (block % blocksX) << BLOCK_SHIFT;
+			int y0 = (block / blocksX) << BLOCK_SHIFT;
+			int x1 = Math.min(x0 + BLOCK_SIZE, width);
+			int y1 = Math.min(y0 + BLOCK_SIZE, height);
+			float max = -Float.MAX_VALUE;
+			//tags come and go with depth tagging
+			int[] depthGeneration = target.getDepthGeneration();
+			int generation = target.getGeneration();
+
+			for(int y = y0; y < y1; y++)
+			{
+				for(int x = x0; x < x1; x++)
+				{
+					int index = x + y * width;
+					boolean current = depthGeneration == null || depthGeneration[index] == generation;
+					max = Math.max(max, current ? depthBuffer[index] : Float.MAX_VALUE);
+				}
+			}
+			blockMax[block] = max;
+			dirty[block] = false;
+		}
+		return blockMax[block];
+	}
+}
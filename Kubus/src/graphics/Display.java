@@ -6,7 +6,9 @@ import java.awt.Graphics;
 import java.awt.event.KeyListener;
 import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.swing.JFrame;
 
@@ -17,21 +19,40 @@ public class Display extends Canvas
 	 * 
 	 */
 	
+	//images the renderer rotates through when presenting asynchronously
+	public static final int PRESENT_IMAGES = 3;
+
 	private JFrame frame;
 	private Renderer frameBuffer;
+	//the image the renderer is currently drawing into
 	private BufferedImage displayImage;
-	private byte[] displayComponents;
 	private BufferStrategy strat;
-	private Graphics g;
-	
+
+	//async presentation, null when swap() presents on the calling thread
+	private Thread presenter;
+	//finished frames waiting for the present thread, at most one so latency stays bounded
+	private BlockingQueue<BufferedImage> presentQueue;
+	//presented images the renderer may draw into again
+	private BlockingQueue<BufferedImage> freeImages;
+	private volatile boolean presenting;
+
 	public Display(int w, int h, String title)
 	{
+		this(w, h, title, 1, false);
+	}
+
+	//bufferCount is passed to createBufferStrategy, asyncPresent blits on a separate thread while the next frame renders
+	public Display(int w, int h, String title, int bufferCount, boolean asyncPresent)
+	{
+		if(bufferCount < 1)
+		{
+			throw new IllegalArgumentException("buffer count must be at least 1, got " + bufferCount);
+		}
 		setPreferredSize(new Dimension(w, h));
 
-		frameBuffer = new Renderer(w, h);
-		displayImage = new BufferedImage(w, h, BufferedImage.TYPE_3BYTE_BGR);
-		
-		displayComponents = ((DataBufferByte)displayImage.getRaster().getDataBuffer()).getData();
+		//the renderer draws straight into the image's pixels, presenting only has to blit
+		displayImage = createFrameImage(w, h);
+		frameBuffer = new Renderer(w, h, getPixels(displayImage));
 		
 		
 		frame = new JFrame(title);
@@ -42,30 +63,141 @@ public class Display extends Canvas
 		
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		
-		createBufferStrategy(1);
+		createBufferStrategy(bufferCount);
 		strat = getBufferStrategy();
-		g = strat.getDrawGraphics();
+
+		if(asyncPresent)
+		{
+			presentQueue = new ArrayBlockingQueue<BufferedImage>(1);
+			freeImages = new ArrayBlockingQueue<BufferedImage>(PRESENT_IMAGES);
+			for(int a=1;a<PRESENT_IMAGES;a++)
+			{
+				freeImages.add(createFrameImage(w, h));
+			}
+			presenting = true;
+			presenter = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					presentLoop();
+				}
+			}, "Kubus present");
+			presenter.setDaemon(true);
+			presenter.start();
+		}
 	}
-	
+
+	private static BufferedImage createFrameImage(int w, int h)
+	{
+		return new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+	}
+
+	private static int[] getPixels(BufferedImage image)
+	{
+		return ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+	}
+
 	public void killMe(KeyListener l)
 	{
 		this.addKeyListener(l);
 	}
-	
+
 	public void setVisible(boolean v)
 	{
 		frame.setVisible(v);
 	}
-	
+
+	//the renderer stays the same object, with async presentation its color buffer changes on every swap
 	public Renderer getFrameBuffer()
 	{
 		return frameBuffer;
 	}
-	
+
+	public boolean isAsyncPresent()
+	{
+		return presenter != null;
+	}
+
+	//hands the finished frame to the screen, with async presentation this only blocks while a frame is already
+	//queued or no presented image is free yet, after stopPresenting() it presents on the calling thread again
+	//the time it takes counts as the present stage while the renderer is profiling
 	public void swap()
 	{
-		frameBuffer.getByteArrayBGR(displayComponents);
-		g.drawImage(displayImage, 0, 0, frameBuffer.getWidth(), frameBuffer.getHeight(), null);
-		strat.show();
+		long start = frameBuffer.isProfiling() ? System.nanoTime() : 0;
+		if(presenter == null || !presenting)
+		{
+			present(displayImage);
+		}
+		else
+		{
+			frameBuffer.flush();
+			try
+			{
+				presentQueue.put(displayImage);
+				displayImage = freeImages.take();
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+			frameBuffer.setColorBuffer(getPixels(displayImage));
+		}
+		if(frameBuffer.isProfiling())
+		{
+			frameBuffer.getStats().addStageNanos(RenderStats.STAGE_PRESENT, System.nanoTime() - start);
+		}
+	}
+
+	//stops the present thread, a frame still waiting in the queue is dropped
+	//queued images go back to the free ones, so a swap() waiting for a free image on another thread returns
+	public void stopPresenting()
+	{
+		if(presenter == null)
+		{
+			return;
+		}
+		presenting = false;
+		presenter.interrupt();
+		try
+		{
+			presenter.join();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		presentQueue.drainTo(freeImages);
+	}
+
+	private void presentLoop()
+	{
+		while(presenting)
+		{
+			BufferedImage image;
+			try
+			{
+				image = presentQueue.take();
+			} catch (InterruptedException e)
+			{
+				continue;
+			}
+			present(image);
+			freeImages.add(image);
+		}
+	}
+
+	//the usual BufferStrategy loop, redraws if the buffer contents were lost in between
+	private void present(BufferedImage image)
+	{
+		do
+		{
+			do
+			{
+				Graphics g = strat.getDrawGraphics();
+				g.drawImage(image, 0, 0, frameBuffer.getWidth(), frameBuffer.getHeight(), null);
+				g.dispose();
+			} while(strat.contentsRestored());
+			strat.show();
+		} while(strat.contentsLost());
 	}
 }
@@ -0,0 +1,219 @@
+package graphics;
+
+//scanline rasterizer whose edge walk is exact integer arithmetic on vertices snapped to 1/SUBPIXEL_SCALE pixel
+//every edge is stepped as a quotient and remainder of its slope, so two triangles sharing an edge compute the same
+//x on every scanline and the top-left rule holds exactly: pixel centers on a left or top edge are drawn,
+//on a right or bottom edge they are not
+class FixedPointRasterizer
+{
+	public static final int SUBPIXEL_BITS = 4;
+	public static final int SUBPIXEL_SCALE = 1 << SUBPIXEL_BITS;
+
+	//first covered pixel of an edge on the current scanline, x * D - rem is the exact edge position times D
+	private static class FixedEdge
+	{
+		long x;
+		long rem;
+		long stepQ;
+		long stepR;
+		long d;
+
+		//xa, ya to xb, yb in subpixels with ya < yb, positioned on scanline y
+		void init(long xa, long ya, long xb, long yb, int y)
+		{
+			long dx = xb - xa;
+			long dy = yb - ya;
+			d = dy * SUBPIXEL_SCALE;
+			long n = xa * dy + ((long)y * SUBPIXEL_SCALE - ya) * dx;
+			x = ceilDiv(n, d);
+			rem = x * d - n;
+
+			long stepN = dx * SUBPIXEL_SCALE;
+			stepQ = floorDiv(stepN, d);
+			stepR = stepN - stepQ * d;
+		}
+
+		void step()
+		{
+			x += stepQ;
+			rem -= stepR;
+			if(rem < 0)
+			{
+				x++;
+				rem += d;
+			}
+		}
+	}
+
+	private final Renderer target;
+	private final float[] depthBuffer;
+	private CoarseDepthBuffer coarseDepth;
+
+	public FixedPointRasterizer(Renderer target)
+	{
+		this.target = target;
+		depthBuffer = target.getDepthBuffer();
+	}
+
+	public void setCoarseDepth(CoarseDepthBuffer coarseDepth)
+	{
+		this.coarseDepth = coarseDepth;
+	}
+
+	//moves a screen space vertex onto the subpixel grid, done before culling so every path sees the same triangle
+	public static void snap(Vertex v)
+	{
+		Vector4f pos = v.getPosition();
+		pos.setXYZW(Math.round(pos.getX() * SUBPIXEL_SCALE) / (float)SUBPIXEL_SCALE,
+				Math.round(pos.getY() * SUBPIXEL_SCALE) / (float)SUBPIXEL_SCALE, pos.getZ(), pos.getW());
+	}
+
+	//vertices sorted by y and already snapped, side is true if midY is left of the long edge
+	//returns the number of pixels written
+	public int rasterize(Vertex minY, Vertex midY, Vertex maxY, boolean side, Bitmap texture, int textureFilter,
+			int clipMinX, int clipMinY, int clipMaxX, int clipMaxY)
+	{
+		long x0 = toFixed(minY.getX()), y0 = toFixed(minY.getY());
+		long x1 = toFixed(midY.getX()), y1 = toFixed(midY.getY());
+		long x2 = toFixed(maxY.getX()), y2 = toFixed(maxY.getY());
+
+		int yStart = Math.max((int)ceilDiv(y0, SUBPIXEL_SCALE), clipMinY);
+		int yMid = (int)ceilDiv(y1, SUBPIXEL_SCALE);
+		int yEnd = Math.min((int)ceilDiv(y2, SUBPIXEL_SCALE), clipMaxY);
+		if(yStart >= yEnd)
+		{
+			return 0;
+		}
+
+		Gradient grad = new Gradient(minY, midY, maxY);
+		FixedEdge longEdge = new FixedEdge();
+		FixedEdge shortEdge = new FixedEdge();
+		longEdge.init(x0, y0, x2, y2, yStart);
+		boolean upper = yStart < yMid;
+		if(upper)
+		{
+			shortEdge.init(x0, y0, x1, y1, yStart);
+		}
+		else
+		{
+			shortEdge.init(x1, y1, x2, y2, yStart);
+		}
+
+		int written = 0;
+		for(int y = yStart; y < yEnd; y++)
+		{
+			if(upper && y == yMid)
+			{
+				upper = false;
+				shortEdge.init(x1, y1, x2, y2, y);
+			}
+
+			FixedEdge left = side ? shortEdge : longEdge;
+			FixedEdge right = side ? longEdge : shortEdge;
+			if(Math.max(left.x, clipMinX) < Math.min(right.x, clipMaxX))
+			{
+				written += drawSpan(grad, minY, y, (int)left.x, (int)right.x, texture, textureFilter, clipMinX, clipMaxX);
+			}
+
+			longEdge.step();
+			shortEdge.step();
+		}
+		return written;
+	}
+
+	//attributes are taken from the gradient planes at the unclipped first pixel, a span cut by a tile border
+	//presteps to the clip directly like the scanline path and accumulates from there
+	private int drawSpan(Gradient grad, Vertex origin, int y, int xMin, int xMax, Bitmap texture, int textureFilter,
+			int clipMinX, int clipMaxX)
+	{
+		float xPrestep = xMin - origin.getX();
+		float yPrestep = y - origin.getY();
+		float texCoordXXStep = grad.getTexCoordXXStep();
+		float texCoordYXStep = grad.getTexCoordYXStep();
+		float oneOverZXStep = grad.getOneOverZXStep();
+		float depthXStep = grad.getDepthXStep();
+		float texCoordX = grad.getTexCoordX(0) + texCoordXXStep * xPrestep + grad.getTexCoordXYStep() * yPrestep;
+		float texCoordY = grad.getTexCoordY(0) + texCoordYXStep * xPrestep + grad.getTexCoordYYStep() * yPrestep;
+		float oneOverZ = grad.getOneOverZ(0) + oneOverZXStep * xPrestep + grad.getOneOverZYStep() * yPrestep;
+		float depth = grad.getDepth(0) + depthXStep * xPrestep + grad.getDepthYStep() * yPrestep;
+
+		//level of detail from the middle of the whole span, independent of clipping
+		float lod = 0;
+		if(textureFilter != Sampler.DIRECT)
+		{
+			float half = (xMax - xMin) * 0.5f;
+			lod = Sampler.computeLod(grad, texCoordX + texCoordXXStep * half, texCoordY + texCoordYXStep * half,
+					oneOverZ + oneOverZXStep * half, texture);
+		}
+
+		int x = Math.max(xMin, clipMinX);
+		int xEnd = Math.min(xMax, clipMaxX);
+		if(x > xMin)
+		{
+			float prestep = x - xMin;
+			texCoordX += texCoordXXStep * prestep;
+			texCoordY += texCoordYXStep * prestep;
+			oneOverZ += oneOverZXStep * prestep;
+			depth += depthXStep * prestep;
+		}
+
+		if(coarseDepth != null)
+		{
+			coarseDepth.markSpan(y, x, xEnd);
+		}
+
+		int texW = texture.getWidth() - 1;
+		int texH = texture.getHeight() - 1;
+		int[] pixels = target.getPixels();
+		int row = y * target.getWidth();
+		int written = 0;
+		target.refreshDepth(x + row, xEnd + row);
+
+		for(; x < xEnd; x++)
+		{
+			int index = x + row;
+			if(depthBuffer[index] > depth)
+			{
+				depthBuffer[index] = depth;
+				written++;
+				float z = 1.f / oneOverZ;
+				if(textureFilter == Sampler.DIRECT)
+				{
+					int srcX = (int)((texCoordX * z) * (float)texW + 0.5f);
+					int srcY = (int)((texCoordY * z) * (float)texH + 0.5f);
+
+					target.copyPixel(x, y, srcX, srcY, texture);
+				}
+				else
+				{
+					pixels[index] = Sampler.sample(textureFilter, texture, lod, texCoordX * z, texCoordY * z);
+				}
+			}
+			oneOverZ += oneOverZXStep;
+			texCoordX += texCoordXXStep;
+			texCoordY += texCoordYXStep;
+			depth += depthXStep;
+		}
+		return written;
+	}
+
+	private static long toFixed(float v)
+	{
+		return Math.round((double)v * SUBPIXEL_SCALE);
+	}
+
+	private static long floorDiv(long n, long d)
+	{
+		long q = n / d;
+		if((n % d != 0) && ((n < 0) != (d < 0)))
+		{
+			q--;
+		}
+		return q;
+	}
+
+	private static long ceilDiv(long n, long d)
+	{
+		return -floorDiv(-n, d);
+	}
+}
@@ -0,0 +1,185 @@
+package graphics;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+//brackets every frame of a renderer: resets its stats, times its stages while enabled, samples covered pixels for the
+//overdraw ratio, draws the last finished frame's numbers over the image and hands finished frames to a FrameRecorder
+//a frame is finished when the next one begins, so the time Display.swap takes after endFrame() belongs to it
+public class FrameProfiler
+{
+	private static final int OVERLAY_X = 8;
+	private static final int OVERLAY_Y = 8;
+	private static final int LINE_HEIGHT = 14;
+	private static final int OVERLAY_WIDTH = 300;
+	//covered pixels are estimated from every 8th row, a full depth buffer scan per frame costs more than the overlay
+	private static final int COVERAGE_ROW_STRIDE = 8;
+
+	private final Renderer renderer;
+	private final FrameRecorder recorder;
+	//stats of the last finished frame, the renderer's own are reset when a frame begins
+	private final RenderStats last;
+	private long frameStart;
+	private long lastFrameNanos;
+	private boolean enabled;
+	private boolean overlay;
+
+	//the overlay draws through an image sharing the color buffer, rebuilt when the renderer switches buffers
+	private int[] overlayPixels;
+	private BufferedImage overlayImage;
+	private Font font;
+
+	public FrameProfiler(Renderer renderer)
+	{
+		this.renderer = renderer;
+		recorder = FrameRecorder.create();
+		last = new RenderStats();
+	}
+
+	//stage timers, pixel coverage and recorded frames, the overlay turns timing on by itself
+	public void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+		renderer.setProfiling(enabled || overlay);
+	}
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	public void setOverlay(boolean overlay)
+	{
+		this.overlay = overlay;
+		renderer.setProfiling(enabled || overlay);
+	}
+
+	public boolean isOverlay()
+	{
+		return overlay;
+	}
+
+	public String getRecorderName()
+	{
+		return recorder.getName();
+	}
+
+	//the last finished frame, including its present time
+	public RenderStats getLastFrame()
+	{
+		return last;
+	}
+
+	public long getLastFrameNanos()
+	{
+		return lastFrameNanos;
+	}
+
+	public void beginFrame()
+	{
+		long now = System.nanoTime();
+		if(frameStart != 0)
+		{
+			last.set(renderer.getStats());
+			lastFrameNanos = now - frameStart;
+			if(enabled)
+			{
+				recorder.frameFinished(last, lastFrameNanos);
+			}
+		}
+		renderer.getStats().reset();
+		frameStart = now;
+		if(enabled)
+		{
+			recorder.frameStarted();
+		}
+	}
+
+	//after everything is drawn and before the frame is presented
+	public void endFrame()
+	{
+		if(enabled || overlay)
+		{
+			renderer.countCoveredPixels(COVERAGE_ROW_STRIDE);
+		}
+		if(overlay)
+		{
+			drawOverlay();
+		}
+	}
+
+	private void drawOverlay()
+	{
+		String[] lines = new String[RenderStats.STAGES + 7];
+		int n = 0;
+		lines[n++] = String.format("frame     %7.2f ms  %5.1f fps", lastFrameNanos / 1e6,
+				lastFrameNanos == 0 ? 0 : 1e9 / lastFrameNanos);
+		for(int a=0;a<RenderStats.STAGES;a++)
+		{
+			lines[n++] = String.format("%-9s %7.2f ms", RenderStats.getStageName(a), last.getStageNanos(a) / 1e6);
+		}
+		lines[n++] = String.format("tris %d  outside %d  clipped %d", last.getTrianglesSubmitted(),
+				last.getTrianglesOutside(), last.getTrianglesClipped());
+		lines[n++] = String.format("culled %d  raster %d  occluded %d", last.getTrianglesCulled(),
+				last.getTrianglesRasterized(), last.getTrianglesOccluded());
+		lines[n++] = String.format("meshes %d  culled %d  occluded %d", last.getMeshesDrawn(),
+				last.getMeshesCulled(), last.getMeshesOccluded());
+		lines[n++] = String.format("pixels %d  overdraw %.2f", last.getPixelsWritten(), last.getOverdraw());
+		lines[n++] = String.format("threads %d  binned %s", renderer.getThreadCount(), renderer.isBinning());
+		lines[n++] = "recorder " + recorder.getName() + (enabled ? "" : " (off)");
+
+		int height = Math.min(n * LINE_HEIGHT + 8, renderer.getHeight() - OVERLAY_Y);
+		int width = Math.min(OVERLAY_WIDTH, renderer.getWidth() - OVERLAY_X);
+		darken(OVERLAY_X, OVERLAY_Y, width, height);
+
+		Graphics2D g = getOverlayImage().createGraphics();
+		g.setFont(font);
+		g.setColor(Color.WHITE);
+		for(int a=0;a<n;a++)
+		{
+			g.drawString(lines[a], OVERLAY_X + 6, OVERLAY_Y + (a + 1) * LINE_HEIGHT);
+		}
+		g.dispose();
+	}
+
+	//quarter brightness behind the text, cheaper than alpha blending through Graphics2D
+	private void darken(int x0, int y0, int width, int height)
+	{
+		int[] pixels = renderer.getPixels();
+		for(int y=Math.max(y0, 0);y<y0 + height;y++)
+		{
+			int row = y * renderer.getWidth();
+			for(int x=Math.max(x0, 0);x<x0 + width;x++)
+			{
+				pixels[row + x] = (pixels[row + x] >> 2) & 0x3f3f3f;
+			}
+		}
+	}
+
+	private BufferedImage getOverlayImage()
+	{
+		int[] pixels = renderer.getPixels();
+		if(overlayPixels != pixels)
+		{
+			int w = renderer.getWidth();
+			int h = renderer.getHeight();
+			DirectColorModel model = new DirectColorModel(24, 0xff0000, 0x00ff00, 0x0000ff);
+			WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, w * h), w, h, w,
+					model.getMasks(), new Point(0, 0));
+			overlayImage = new BufferedImage(model, raster, false, null);
+			overlayPixels = pixels;
+			if(font == null)
+			{
+				font = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+			}
+		}
+		return overlayImage;
+	}
+}
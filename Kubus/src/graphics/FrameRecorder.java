@@ -0,0 +1,36 @@
+package graphics;
+
+//hands finished frames to an external recorder, this base class drops them
+//the flight recorder backend lives in src-jfr and needs a JDK with jdk.jfr at compile and run time,
+//without it create() falls back to this one
+class FrameRecorder
+{
+	private static final String JFR_BACKEND = "graphics.JfrFrameRecorder";
+
+	public static FrameRecorder create()
+	{
+		try
+		{
+			return (FrameRecorder)Class.forName(JFR_BACKEND).getDeclaredConstructor().newInstance();
+		}
+		catch(Throwable e)
+		{
+			//missing class or a runtime without jdk.jfr
+			return new FrameRecorder();
+		}
+	}
+
+	public String getName()
+	{
+		return "none";
+	}
+
+	public void frameStarted()
+	{
+	}
+
+	//stats of the frame started last, frameNanos from its start to the start of the next one
+	public void frameFinished(RenderStats stats, long frameNanos)
+	{
+	}
+}
@@ -0,0 +1,71 @@
+package graphics;
+
+//the six clip planes of a (model) view projection, w +- x, w +- y and w +- z >= 0 like Clipper and IsInsideViewFrustum
+//planes taken from a model view projection are in model space, so bounds can be tested before any vertex is transformed
+class Frustum
+{
+	private static final int PLANES = 6;
+
+	//a, b, c, d per plane, a point is inside if a * x + b * y + c * z + d >= 0 for every plane
+	private final float[] planes;
+
+	public Frustum()
+	{
+		planes = new float[PLANES * 4];
+	}
+
+	public void set(Matrix4f m)
+	{
+		for(int c=0;c<4;c++)
+		{
+			float w = m.get(3, c);
+			planes[c] = w + m.get(0, c);
+			planes[4 + c] = w - m.get(0, c);
+			planes[8 + c] = w + m.get(1, c);
+			planes[12 + c] = w - m.get(1, c);
+			planes[16 + c] = w + m.get(2, c);
+			planes[20 + c] = w - m.get(2, c);
+		}
+		//unit normals so the sphere test can compare distances with the radius
+		for(int p=0;p<planes.length;p+=4)
+		{
+			float length = (float)Math.sqrt(planes[p] * planes[p] + planes[p + 1] * planes[p + 1] + planes[p + 2] * planes[p + 2]);
+			if(length > 0)
+			{
+				planes[p] /= length;
+				planes[p + 1] /= length;
+				planes[p + 2] /= length;
+				planes[p + 3] /= length;
+			}
+		}
+	}
+
+	public boolean isSphereOutside(float x, float y, float z, float radius)
+	{
+		for(int p=0;p<planes.length;p+=4)
+		{
+			if(planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3] < -radius)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//true if the box is completely behind one plane, boxes that only straddle corners of the frustum count as inside
+	public boolean isBoxOutside(float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+	{
+		for(int p=0;p<planes.length;p+=4)
+		{
+			//the corner furthest along the plane normal
+			float x = planes[p] >= 0 ? maxX : minX;
+			float y = planes[p + 1] >= 0 ? maxY : minY;
+			float z = planes[p + 2] >= 0 ? maxZ : minZ;
+			if(planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3] < 0)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}
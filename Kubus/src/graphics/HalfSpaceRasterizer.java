@@ -0,0 +1,261 @@
+package graphics;
+
+//rasterizes with edge functions over BLOCK_SIZE x BLOCK_SIZE pixel blocks
+//blocks outside any edge are skipped, blocks inside all three edges are taken whole without per pixel edge tests
+//vertices are snapped to 1/SUBPIXEL_SCALE pixel like in the fixed point path, so the edge functions are exact integers
+//stepped by adding, and the top-left rule holds exactly: left/top edges inclusive, right/bottom exclusive
+//the covered pixels of every row are then drawn as one span with attributes evaluated at start + step * i
+class HalfSpaceRasterizer
+{
+	public static final int BLOCK_SIZE = 8;
+	private static final int SUBPIXEL_SCALE = FixedPointRasterizer.SUBPIXEL_SCALE;
+	private static final SpanRenderer SCALAR = new SpanRenderer();
+
+	private final Renderer target;
+	private final float[] depthBuffer;
+	private CoarseDepthBuffer coarseDepth;
+	private SpanRenderer spans;
+
+	public HalfSpaceRasterizer(Renderer target)
+	{
+		this.target = target;
+		depthBuffer = target.getDepthBuffer();
+		spans = SCALAR;
+	}
+
+	public void setCoarseDepth(CoarseDepthBuffer coarseDepth)
+	{
+		this.coarseDepth = coarseDepth;
+	}
+
+	//null goes back to the scalar loop
+	public void setSpanRenderer(SpanRenderer spans)
+	{
+		this.spans = spans != null ? spans : SCALAR;
+	}
+
+	//vertices already snapped, returns the number of pixels written
+	public int rasterize(Vertex v0, Vertex v1, Vertex v2, Bitmap texture, int textureFilter,
+			int clipMinX, int clipMinY, int clipMaxX, int clipMaxY)
+	{
+		long x0 = Math.round(v0.getX() * SUBPIXEL_SCALE), y0 = Math.round(v0.getY() * SUBPIXEL_SCALE);
+		long x1 = Math.round(v1.getX() * SUBPIXEL_SCALE), y1 = Math.round(v1.getY() * SUBPIXEL_SCALE);
+		long x2 = Math.round(v2.getX() * SUBPIXEL_SCALE), y2 = Math.round(v2.getY() * SUBPIXEL_SCALE);
+
+		//reorder so the interior is on the positive side of every edge
+		long area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+		if(area == 0)
+		{
+			return 0;
+		}
+		if(area < 0)
+		{
+			Vertex temp = v1;
+			v1 = v2;
+			v2 = temp;
+			long tx = x1, ty = y1;
+			x1 = x2;
+			y1 = y2;
+			x2 = tx;
+			y2 = ty;
+		}
+
+		//unclipped left end, spans start there so tiles of a binned frame draw the same values as one unbinned pass
+		int triangleMinX = (int)Math.ceil(Math.min(v0.getX(), Math.min(v1.getX(), v2.getX())));
+		int minX = Math.max(clipMinX, triangleMinX);
+		int minY = Math.max(clipMinY, (int)Math.ceil(Math.min(v0.getY(), Math.min(v1.getY(), v2.getY()))));
+		int maxX = Math.min(clipMaxX, (int)Math.ceil(Math.max(v0.getX(), Math.max(v1.getX(), v2.getX())))) - 1;
+		int maxY = Math.min(clipMaxY, (int)Math.ceil(Math.max(v0.getY(), Math.max(v1.getY(), v2.getY())))) - 1;
+		if(minX > maxX || minY > maxY)
+		{
+			return 0;
+		}
+
+		//edge i is positive on the side of vertex i, a and b are its steps per subpixel in x and y
+		long a0 = y1 - y2, b0 = x2 - x1;
+		long a1 = y2 - y0, b1 = x0 - x2;
+		long a2 = y0 - y1, b2 = x1 - x0;
+		//pixels exactly on a right or bottom edge need the function to be at least 1
+		long bias0 = isTopLeft(a0, b0) ? 0 : -1;
+		long bias1 = isTopLeft(a1, b1) ? 0 : -1;
+		long bias2 = isTopLeft(a2, b2) ? 0 : -1;
+		//steps per pixel
+		long stepX0 = a0 * SUBPIXEL_SCALE, stepY0 = b0 * SUBPIXEL_SCALE;
+		long stepX1 = a1 * SUBPIXEL_SCALE, stepY1 = b1 * SUBPIXEL_SCALE;
+		long stepX2 = a2 * SUBPIXEL_SCALE, stepY2 = b2 * SUBPIXEL_SCALE;
+
+		Gradient grad = new Gradient(v0, v1, v2);
+		float texCoordXXStep = grad.getTexCoordXXStep();
+		float texCoordYXStep = grad.getTexCoordYXStep();
+		float oneOverZXStep = grad.getOneOverZXStep();
+		float depthXStep = grad.getDepthXStep();
+		float texCoordXYStep = grad.getTexCoordXYStep();
+		float texCoordYYStep = grad.getTexCoordYYStep();
+		float oneOverZYStep = grad.getOneOverZYStep();
+		float depthYStep = grad.getDepthYStep();
+		int w = target.getWidth();
+		int[] pixels = target.getPixels();
+		int written = 0;
+
+		for(int by = minY - minY % BLOCK_SIZE; by <= maxY; by += BLOCK_SIZE)
+		{
+			int blockY = Math.max(by, minY);
+			int lastY = Math.min(by + BLOCK_SIZE - 1, maxY);
+			long dy = lastY - blockY;
+
+			//the block row's blocks that are not outside an edge, and whether the first and last are covered whole
+			int left = Integer.MAX_VALUE;
+			int right = Integer.MIN_VALUE;
+			boolean leftCovered = false;
+			boolean rightCovered = false;
+			for(int bx = minX - minX % BLOCK_SIZE; bx <= maxX; bx += BLOCK_SIZE)
+			{
+				int blockX = Math.max(bx, minX);
+				int lastX = Math.min(bx + BLOCK_SIZE - 1, maxX);
+				long dx = lastX - blockX;
+
+				//edge functions at the block's first pixel center
+				long e0 = (blockX * SUBPIXEL_SCALE - x1) * a0 + (blockY * SUBPIXEL_SCALE - y1) * b0 + bias0;
+				long e1 = (blockX * SUBPIXEL_SCALE - x2) * a1 + (blockY * SUBPIXEL_SCALE - y2) * b1 + bias1;
+				long e2 = (blockX * SUBPIXEL_SCALE - x0) * a2 + (blockY * SUBPIXEL_SCALE - y0) * b2 + bias2;
+
+				//trivial reject if every corner is outside one edge
+				if(e0 + Math.max(stepX0 * dx, 0) + Math.max(stepY0 * dy, 0) < 0 ||
+						e1 + Math.max(stepX1 * dx, 0) + Math.max(stepY1 * dy, 0) < 0 ||
+						e2 + Math.max(stepX2 * dx, 0) + Math.max(stepY2 * dy, 0) < 0)
+				{
+					continue;
+				}
+
+				//trivial accept if every corner is inside all edges
+				boolean covered = e0 + Math.min(stepX0 * dx, 0) + Math.min(stepY0 * dy, 0) >= 0 &&
+						e1 + Math.min(stepX1 * dx, 0) + Math.min(stepY1 * dy, 0) >= 0 &&
+						e2 + Math.min(stepX2 * dx, 0) + Math.min(stepY2 * dy, 0) >= 0;
+				if(left == Integer.MAX_VALUE)
+				{
+					left = blockX;
+					leftCovered = covered;
+				}
+				right = lastX;
+				rightCovered = covered;
+
+				if(coarseDepth != null)
+				{
+					coarseDepth.markBlock(blockX, blockY);
+				}
+			}
+			if(left > right)
+			{
+				continue;
+			}
+
+			//edge functions at both ends of the block row's first row
+			long l0 = (left * SUBPIXEL_SCALE - x1) * a0 + (blockY * SUBPIXEL_SCALE - y1) * b0 + bias0;
+			long l1 = (left * SUBPIXEL_SCALE - x2) * a1 + (blockY * SUBPIXEL_SCALE - y2) * b1 + bias1;
+			long l2 = (left * SUBPIXEL_SCALE - x0) * a2 + (blockY * SUBPIXEL_SCALE - y0) * b2 + bias2;
+			long width = right - left;
+			long r0 = l0 + stepX0 * width;
+			long r1 = l1 + stepX1 * width;
+			long r2 = l2 + stepX2 * width;
+
+			//attributes at the triangle's left end of the block row's first row, stepped down the rows
+			float xPrestep = triangleMinX - v0.getX();
+			float yPrestep = blockY - v0.getY();
+			float texCoordX = grad.getTexCoordX(0) + texCoordXXStep * xPrestep + texCoordXYStep * yPrestep;
+			float texCoordY = grad.getTexCoordY(0) + texCoordYXStep * xPrestep + texCoordYYStep * yPrestep;
+			float oneOverZ = grad.getOneOverZ(0) + oneOverZXStep * xPrestep + oneOverZYStep * yPrestep;
+			float depth = grad.getDepth(0) + depthXStep * xPrestep + depthYStep * yPrestep;
+
+			for(int y = blockY; y <= lastY; y++)
+			{
+				//a row of a triangle is one run, only the partly covered blocks at its ends are searched for it
+				int from = left;
+				if(!leftCovered)
+				{
+					long f0 = l0, f1 = l1, f2 = l2;
+					while(from <= right && (f0 | f1 | f2) < 0)
+					{
+						f0 += stepX0;
+						f1 += stepX1;
+						f2 += stepX2;
+						from++;
+					}
+				}
+				int to = right;
+				if(!rightCovered)
+				{
+					long t0 = r0, t1 = r1, t2 = r2;
+					while(to >= from && (t0 | t1 | t2) < 0)
+					{
+						t0 -= stepX0;
+						t1 -= stepX1;
+						t2 -= stepX2;
+						to--;
+					}
+				}
+
+				if(from <= to)
+				{
+					int start = triangleMinX + y * w;
+					from -= triangleMinX;
+					to -= triangleMinX - 1;
+					target.refreshDepth(start + from, start + to);
+					if(textureFilter == Sampler.DIRECT)
+					{
+						written += spans.drawSpan(pixels, depthBuffer, start, from, to,
+								depth, depthXStep, oneOverZ, oneOverZXStep,
+								texCoordX, texCoordXXStep, texCoordY, texCoordYXStep, texture);
+					}
+					else
+					{
+						written += drawFiltered(grad, start, from, to, depth, depthXStep, oneOverZ, oneOverZXStep,
+								texCoordX, texCoordXXStep, texCoordY, texCoordYXStep, texture, textureFilter, pixels);
+					}
+				}
+				l0 += stepY0;
+				l1 += stepY1;
+				l2 += stepY2;
+				r0 += stepY0;
+				r1 += stepY1;
+				r2 += stepY2;
+				texCoordX += texCoordXYStep;
+				texCoordY += texCoordYYStep;
+				oneOverZ += oneOverZYStep;
+				depth += depthYStep;
+			}
+		}
+		return written;
+	}
+
+	//the same span with a filtered sampler, one level of detail taken at its middle
+	private int drawFiltered(Gradient grad, int start, int from, int to, float depth, float depthStep,
+			float oneOverZ, float oneOverZStep, float texCoordX, float texCoordXStep, float texCoordY, float texCoordYStep,
+			Bitmap texture, int textureFilter, int[] pixels)
+	{
+		float half = (from + to) * 0.5f;
+		float lod = Sampler.computeLod(grad, texCoordX + texCoordXStep * half, texCoordY + texCoordYStep * half,
+				oneOverZ + oneOverZStep * half, texture);
+		int written = 0;
+		for(int i=from;i<to;i++)
+		{
+			float fi = i;
+			float d = depth + depthStep * fi;
+			int index = start + i;
+			if(depthBuffer[index] > d)
+			{
+				depthBuffer[index] = d;
+				written++;
+				float z = 1.f / (oneOverZ + oneOverZStep * fi);
+				pixels[index] = Sampler.sample(textureFilter, texture, lod,
+						(texCoordX + texCoordXStep * fi) * z, (texCoordY + texCoordYStep * fi) * z);
+			}
+		}
+		return written;
+	}
+
+	//pixels exactly on a left or top edge belong to the triangle, on a right or bottom edge they do not
+	private static boolean isTopLeft(long a, long b)
+	{
+		return a > 0 || (a == 0 && b > 0);
+	}
+}
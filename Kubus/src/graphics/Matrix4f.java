@@ -1,39 +1,41 @@
 package graphics;
 
+//row major 4x4 matrix in one flat array, element (row, column) is m[row * 4 + column]
+//the *Into and init* methods write into existing objects so the render loop does not have to allocate
 public class Matrix4f
 {
-	private float[][] m;
+	private final float[] m;
 
 	public Matrix4f()
 	{
-		m = new float[4][4];
+		m = new float[16];
 	}
 
 	public Matrix4f initIdentity()
 	{
-		m[0][0] = 1;	m[0][1] = 0;	m[0][2] = 0;	m[0][3] = 0;
-		m[1][0] = 0;	m[1][1] = 1;	m[1][2] = 0;	m[1][3] = 0;
-		m[2][0] = 0;	m[2][1] = 0;	m[2][2] = 1;	m[2][3] = 0;
-		m[3][0] = 0;	m[3][1] = 0;	m[3][2] = 0;	m[3][3] = 1;
+		m[0] = 1;	m[1] = 0;	m[2] = 0;	m[3] = 0;
+		m[4] = 0;	m[5] = 1;	m[6] = 0;	m[7] = 0;
+		m[8] = 0;	m[9] = 0;	m[10] = 1;	m[11] = 0;
+		m[12] = 0;	m[13] = 0;	m[14] = 0;	m[15] = 1;
 
 		return this;
 	}
 
 	public Matrix4f initScreenSpaceTransform(float halfWidth, float halfHeight)
 	{
-		m[0][0] = halfWidth;	m[0][1] = 0;	m[0][2] = 0;	m[0][3] = halfWidth - 0.5f;
-		m[1][0] = 0;	m[1][1] = -halfHeight;	m[1][2] = 0;	m[1][3] = halfHeight - 0.5f;
-		m[2][0] = 0;	m[2][1] = 0;	m[2][2] = 1;	m[2][3] = 0;
-		m[3][0] = 0;	m[3][1] = 0;	m[3][2] = 0;	m[3][3] = 1;
+		m[0] = halfWidth;	m[1] = 0;	m[2] = 0;	m[3] = halfWidth - 0.5f;
+		m[4] = 0;	m[5] = -halfHeight;	m[6] = 0;	m[7] = halfHeight - 0.5f;
+		m[8] = 0;	m[9] = 0;	m[10] = 1;	m[11] = 0;
+		m[12] = 0;	m[13] = 0;	m[14] = 0;	m[15] = 1;
 		return this;
 	}
 
 	public Matrix4f initTranslation(float x, float y, float z)
 	{
-		m[0][0] = 1;	m[0][1] = 0;	m[0][2] = 0;	m[0][3] = x;
-		m[1][0] = 0;	m[1][1] = 1;	m[1][2] = 0;	m[1][3] = y;
-		m[2][0] = 0;	m[2][1] = 0;	m[2][2] = 1;	m[2][3] = z;
-		m[3][0] = 0;	m[3][1] = 0;	m[3][2] = 0;	m[3][3] = 1;
+		m[0] = 1;	m[1] = 0;	m[2] = 0;	m[3] = x;
+		m[4] = 0;	m[5] = 1;	m[6] = 0;	m[7] = y;
+		m[8] = 0;	m[9] = 0;	m[10] = 1;	m[11] = z;
+		m[12] = 0;	m[13] = 0;	m[14] = 0;	m[15] = 1;
 
 		return this;
 	}
@@ -43,10 +45,10 @@ public class Matrix4f
 		float sin = (float)Math.sin(angle);
 		float cos = (float)Math.cos(angle);
 
-		m[0][0] = cos+x*x*(1-cos); m[0][1] = x*y*(1-cos)-z*sin; m[0][2] = x*z*(1-cos)+y*sin; m[0][3] = 0;
-		m[1][0] = y*x*(1-cos)+z*sin; m[1][1] = cos+y*y*(1-cos);	m[1][2] = y*z*(1-cos)-x*sin; m[1][3] = 0;
-		m[2][0] = z*x*(1-cos)-y*sin; m[2][1] = z*y*(1-cos)+x*sin; m[2][2] = cos+z*z*(1-cos); m[2][3] = 0;
-		m[3][0] = 0;	m[3][1] = 0;	m[3][2] = 0;	m[3][3] = 1;
+		m[0] = cos+x*x*(1-cos); m[1] = x*y*(1-cos)-z*sin; m[2] = x*z*(1-cos)+y*sin; m[3] = 0;
+		m[4] = y*x*(1-cos)+z*sin; m[5] = cos+y*y*(1-cos);	m[6] = y*z*(1-cos)-x*sin; m[7] = 0;
+		m[8] = z*x*(1-cos)-y*sin; m[9] = z*y*(1-cos)+x*sin; m[10] = cos+z*z*(1-cos); m[11] = 0;
+		m[12] = 0;	m[13] = 0;	m[14] = 0;	m[15] = 1;
 
 		return this;
 	}
@@ -57,32 +59,33 @@ public class Matrix4f
 		Matrix4f ry = new Matrix4f();
 		Matrix4f rz = new Matrix4f();
 
-		rz.m[0][0] = (float)Math.cos(z);rz.m[0][1] = -(float)Math.sin(z);rz.m[0][2] = 0;				rz.m[0][3] = 0;
-		rz.m[1][0] = (float)Math.sin(z);rz.m[1][1] = (float)Math.cos(z);rz.m[1][2] = 0;					rz.m[1][3] = 0;
-		rz.m[2][0] = 0;					rz.m[2][1] = 0;					rz.m[2][2] = 1;					rz.m[2][3] = 0;
-		rz.m[3][0] = 0;					rz.m[3][1] = 0;					rz.m[3][2] = 0;					rz.m[3][3] = 1;
+		rz.m[0] = (float)Math.cos(z);rz.m[1] = -(float)Math.sin(z);rz.m[2] = 0;				rz.m[3] = 0;
+		rz.m[4] = (float)Math.sin(z);rz.m[5] = (float)Math.cos(z);rz.m[6] = 0;					rz.m[7] = 0;
+		rz.m[8] = 0;					rz.m[9] = 0;					rz.m[10] = 1;					rz.m[11] = 0;
+		rz.m[12] = 0;					rz.m[13] = 0;					rz.m[14] = 0;					rz.m[15] = 1;
 
-		rx.m[0][0] = 1;					rx.m[0][1] = 0;					rx.m[0][2] = 0;					rx.m[0][3] = 0;
-		rx.m[1][0] = 0;					rx.m[1][1] = (float)Math.cos(x);rx.m[1][2] = -(float)Math.sin(x);rx.m[1][3] = 0;
-		rx.m[2][0] = 0;					rx.m[2][1] = (float)Math.sin(x);rx.m[2][2] = (float)Math.cos(x);rx.m[2][3] = 0;
-		rx.m[3][0] = 0;					rx.m[3][1] = 0;					rx.m[3][2] = 0;					rx.m[3][3] = 1;
+		rx.m[0] = 1;					rx.m[1] = 0;					rx.m[2] = 0;					rx.m[3] = 0;
+		rx.m[4] = 0;					rx.m[5] = (float)Math.cos(x);rx.m[6] = -(float)Math.sin(x);rx.m[7] = 0;
+		rx.m[8] = 0;					rx.m[9] = (float)Math.sin(x);rx.m[10] = (float)Math.cos(x);rx.m[11] = 0;
+		rx.m[12] = 0;					rx.m[13] = 0;					rx.m[14] = 0;					rx.m[15] = 1;
 
-		ry.m[0][0] = (float)Math.cos(y);ry.m[0][1] = 0;					ry.m[0][2] = -(float)Math.sin(y);ry.m[0][3] = 0;
-		ry.m[1][0] = 0;					ry.m[1][1] = 1;					ry.m[1][2] = 0;					ry.m[1][3] = 0;
-		ry.m[2][0] = (float)Math.sin(y);ry.m[2][1] = 0;					ry.m[2][2] = (float)Math.cos(y);ry.m[2][3] = 0;
-		ry.m[3][0] = 0;					ry.m[3][1] = 0;					ry.m[3][2] = 0;					ry.m[3][3] = 1;
+		ry.m[0] = (float)Math.cos(y);ry.m[1] = 0;					ry.m[2] = -(float)Math.sin(y);ry.m[3] = 0;
+		ry.m[4] = 0;					ry.m[5] = 1;					ry.m[6] = 0;					ry.m[7] = 0;
+		ry.m[8] = (float)Math.sin(y);ry.m[9] = 0;					ry.m[10] = (float)Math.cos(y);ry.m[11] = 0;
+		ry.m[12] = 0;					ry.m[13] = 0;					ry.m[14] = 0;					ry.m[15] = 1;
 
-		m = rz.mul(ry.mul(rx)).getM();
+		ry.mulInto(rx, ry);
+		rz.mulInto(ry, this);
 
 		return this;
 	}
 
 	public Matrix4f initScale(float x, float y, float z)
 	{
-		m[0][0] = x;	m[0][1] = 0;	m[0][2] = 0;	m[0][3] = 0;
-		m[1][0] = 0;	m[1][1] = y;	m[1][2] = 0;	m[1][3] = 0;
-		m[2][0] = 0;	m[2][1] = 0;	m[2][2] = z;	m[2][3] = 0;
-		m[3][0] = 0;	m[3][1] = 0;	m[3][2] = 0;	m[3][3] = 1;
+		m[0] = x;	m[1] = 0;	m[2] = 0;	m[3] = 0;
+		m[4] = 0;	m[5] = y;	m[6] = 0;	m[7] = 0;
+		m[8] = 0;	m[9] = 0;	m[10] = z;	m[11] = 0;
+		m[12] = 0;	m[13] = 0;	m[14] = 0;	m[15] = 1;
 
 		return this;
 	}
@@ -92,10 +95,10 @@ public class Matrix4f
 		float tanHalfFOV = (float)Math.tan(fov / 2);
 		float zRange = zNear - zFar;
 
-		m[0][0] = 1.0f / (tanHalfFOV * aspectRatio);	m[0][1] = 0;					m[0][2] = 0;	m[0][3] = 0;
-		m[1][0] = 0;						m[1][1] = 1.0f / tanHalfFOV;	m[1][2] = 0;	m[1][3] = 0;
-		m[2][0] = 0;						m[2][1] = 0;					m[2][2] = (-zNear -zFar)/zRange;	m[2][3] = 2 * zFar * zNear / zRange;
-		m[3][0] = 0;						m[3][1] = 0;					m[3][2] = 1;	m[3][3] = 0;
+		m[0] = 1.0f / (tanHalfFOV * aspectRatio);	m[1] = 0;					m[2] = 0;	m[3] = 0;
+		m[4] = 0;						m[5] = 1.0f / tanHalfFOV;	m[6] = 0;	m[7] = 0;
+		m[8] = 0;						m[9] = 0;					m[10] = (-zNear -zFar)/zRange;	m[11] = 2 * zFar * zNear / zRange;
+		m[12] = 0;						m[13] = 0;					m[14] = 1;	m[15] = 0;
 
 
 		return this;
@@ -107,10 +110,10 @@ public class Matrix4f
 		float height = top - bottom;
 		float depth = far - near;
 
-		m[0][0] = 2/width;m[0][1] = 0;	m[0][2] = 0;	m[0][3] = -(right + left)/width;
-		m[1][0] = 0;	m[1][1] = 2/height;m[1][2] = 0;	m[1][3] = -(top + bottom)/height;
-		m[2][0] = 0;	m[2][1] = 0;	m[2][2] = -2/depth;m[2][3] = -(far + near)/depth;
-		m[3][0] = 0;	m[3][1] = 0;	m[3][2] = 0;	m[3][3] = 1;
+		m[0] = 2/width;m[1] = 0;	m[2] = 0;	m[3] = -(right + left)/width;
+		m[4] = 0;	m[5] = 2/height;m[6] = 0;	m[7] = -(top + bottom)/height;
+		m[8] = 0;	m[9] = 0;	m[10] = -2/depth;m[11] = -(far + near)/depth;
+		m[12] = 0;	m[13] = 0;	m[14] = 0;	m[15] = 1;
 
 		return this;
 	}
@@ -133,38 +136,112 @@ public class Matrix4f
 		Vector4f r = right;
 		Vector4f u = up;
 
-		m[0][0] = r.getX();	m[0][1] = r.getY();	m[0][2] = r.getZ();	m[0][3] = 0;
-		m[1][0] = u.getX();	m[1][1] = u.getY();	m[1][2] = u.getZ();	m[1][3] = 0;
-		m[2][0] = f.getX();	m[2][1] = f.getY();	m[2][2] = f.getZ();	m[2][3] = 0;
-		m[3][0] = 0;		m[3][1] = 0;		m[3][2] = 0;		m[3][3] = 1;
+		m[0] = r.getX();	m[1] = r.getY();	m[2] = r.getZ();	m[3] = 0;
+		m[4] = u.getX();	m[5] = u.getY();	m[6] = u.getZ();	m[7] = 0;
+		m[8] = f.getX();	m[9] = f.getY();	m[10] = f.getZ();	m[11] = 0;
+		m[12] = 0;		m[13] = 0;		m[14] = 0;		m[15] = 1;
 
 		return this;
 	}
 
 	public Vector4f transform(Vector4f r)
 	{
-		return new Vector4f(m[0][0] * r.getX() + m[0][1] * r.getY() + m[0][2] * r.getZ() + m[0][3] * r.getW(),
-		                    m[1][0] * r.getX() + m[1][1] * r.getY() + m[1][2] * r.getZ() + m[1][3] * r.getW(),
-		                    m[2][0] * r.getX() + m[2][1] * r.getY() + m[2][2] * r.getZ() + m[2][3] * r.getW(),
-							m[3][0] * r.getX() + m[3][1] * r.getY() + m[3][2] * r.getZ() + m[3][3] * r.getW());
+		return transformInto(r, new Vector4f(0, 0, 0, 0));
+	}
+
+	//r and dest may be the same vector
+	public Vector4f transformInto(Vector4f r, Vector4f dest)
+	{
+		float x = r.getX();
+		float y = r.getY();
+		float z = r.getZ();
+		float w = r.getW();
+		dest.setXYZW(m[0] * x + m[1] * y + m[2] * z + m[3] * w,
+		             m[4] * x + m[5] * y + m[6] * z + m[7] * w,
+		             m[8] * x + m[9] * y + m[10] * z + m[11] * w,
+		             m[12] * x + m[13] * y + m[14] * z + m[15] * w);
+		return dest;
+	}
+
+	//reads x, y, z, w from src[offset]
+	public Vector4f transformInto(float[] src, int offset, Vector4f dest)
+	{
+		float x = src[offset];
+		float y = src[offset + 1];
+		float z = src[offset + 2];
+		float w = src[offset + 3];
+		dest.setXYZW(m[0] * x + m[1] * y + m[2] * z + m[3] * w,
+		             m[4] * x + m[5] * y + m[6] * z + m[7] * w,
+		             m[8] * x + m[9] * y + m[10] * z + m[11] * w,
+		             m[12] * x + m[13] * y + m[14] * z + m[15] * w);
+		return dest;
+	}
+
+	//transforms count x, y, z, w positions from src to dest, the ranges may be the same but must not partially overlap
+	public void transformInto(float[] src, int srcOffset, float[] dest, int destOffset, int count)
+	{
+		for(int a=0;a<count;a++)
+		{
+			int i = srcOffset + a * 4;
+			int o = destOffset + a * 4;
+			float x = src[i];
+			float y = src[i + 1];
+			float z = src[i + 2];
+			float w = src[i + 3];
+			dest[o] = m[0] * x + m[1] * y + m[2] * z + m[3] * w;
+			dest[o + 1] = m[4] * x + m[5] * y + m[6] * z + m[7] * w;
+			dest[o + 2] = m[8] * x + m[9] * y + m[10] * z + m[11] * w;
+			dest[o + 3] = m[12] * x + m[13] * y + m[14] * z + m[15] * w;
+		}
 	}
 
 	public Matrix4f mul(Matrix4f r)
 	{
-		Matrix4f res = new Matrix4f();
+		return mulInto(r, new Matrix4f());
+	}
 
-		for(int i = 0; i < 4; i++)
+	//dest = this * r, dest may be this or r
+	public Matrix4f mulInto(Matrix4f r, Matrix4f dest)
+	{
+		mul(m, r.m, 0, dest.m);
+		return dest;
+	}
+
+	//this = this * r
+	public Matrix4f mulInPlace(Matrix4f r)
+	{
+		return mulInto(r, this);
+	}
+
+	//dest = this * the row major matrix stored at r[offset], dest may be this
+	public Matrix4f mulInto(float[] r, int offset, Matrix4f dest)
+	{
+		mul(m, r, offset, dest.m);
+		return dest;
+	}
+
+	//b is read completely before anything is written, so dest may alias a or b
+	private static void mul(float[] a, float[] b, int offset, float[] dest)
+	{
+		float b00 = b[offset],      b01 = b[offset + 1],  b02 = b[offset + 2],  b03 = b[offset + 3];
+		float b10 = b[offset + 4],  b11 = b[offset + 5],  b12 = b[offset + 6],  b13 = b[offset + 7];
+		float b20 = b[offset + 8],  b21 = b[offset + 9],  b22 = b[offset + 10], b23 = b[offset + 11];
+		float b30 = b[offset + 12], b31 = b[offset + 13], b32 = b[offset + 14], b33 = b[offset + 15];
+
+		for(int i = 0; i < 16; i += 4)
 		{
-			for(int j = 0; j < 4; j++)
-			{
-				res.set(i, j, m[i][0] * r.get(0, j) +
-						m[i][1] * r.get(1, j) +
-						m[i][2] * r.get(2, j) +
-						m[i][3] * r.get(3, j));
-			}
+			float a0 = a[i], a1 = a[i + 1], a2 = a[i + 2], a3 = a[i + 3];
+			dest[i] = a0 * b00 + a1 * b10 + a2 * b20 + a3 * b30;
+			dest[i + 1] = a0 * b01 + a1 * b11 + a2 * b21 + a3 * b31;
+			dest[i + 2] = a0 * b02 + a1 * b12 + a2 * b22 + a3 * b32;
+			dest[i + 3] = a0 * b03 + a1 * b13 + a2 * b23 + a3 * b33;
 		}
+	}
 
-		return res;
+	public Matrix4f set(Matrix4f r)
+	{
+		System.arraycopy(r.m, 0, m, 0, 16);
+		return this;
 	}
 
 	public float[][] getM()
@@ -173,23 +250,31 @@ public class Matrix4f
 
 		for(int i = 0; i < 4; i++)
 			for(int j = 0; j < 4; j++)
-				res[i][j] = m[i][j];
+				res[i][j] = m[i * 4 + j];
 
 		return res;
 	}
 
+	//writes the matrix row major into dest starting at offset
+	public void copyTo(float[] dest, int offset)
+	{
+		System.arraycopy(m, 0, dest, offset, 16);
+	}
+
 	public float get(int x, int y)
 	{
-		return m[x][y];
+		return m[x * 4 + y];
 	}
 
 	public void setM(float[][] m)
 	{
-		this.m = m;
+		for(int i = 0; i < 4; i++)
+			for(int j = 0; j < 4; j++)
+				this.m[i * 4 + j] = m[i][j];
 	}
 
 	public void set(int x, int y, float value)
 	{
-		m[x][y] = value;
+		m[x * 4 + y] = value;
 	}
-}
\ No newline at end of file
+}
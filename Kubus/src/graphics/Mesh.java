@@ -1,31 +1,324 @@
 package graphics;
 
+import java.util.Arrays;
 import java.util.List;
 
+//vertex attributes live in flat float arrays and indices in an int array, so drawing reads them without unboxing
+//positions are x, y, z, w per vertex and texcoords u, v per vertex
 public class Mesh
 {
-	private List<Vertex>  vertices;
-	private List<Integer> indices;
+	public static final int POSITION_SIZE = 4;
+	public static final int TEXCOORD_SIZE = 2;
 
-	public Vertex getVertex(int i) { return vertices.get(i); }
-	public int getIndex(int i) { return indices.get(i); }
-	public int getNumIndices() { return indices.size(); }
+	//collects vertices and indices into growing arrays, build() copies them into a mesh
+	public static class Builder
+	{
+		private float[] positions;
+		private float[] texCoords;
+		private int[] indices;
+		private int numVertices;
+		private int numIndices;
+		private int cullMode;
+
+		public Builder()
+		{
+			this(16, 16);
+		}
+
+		public Builder(int vertexCapacity, int indexCapacity)
+		{
+			positions = new float[Math.max(vertexCapacity, 1) * POSITION_SIZE];
+			texCoords = new float[Math.max(vertexCapacity, 1) * TEXCOORD_SIZE];
+			indices = new int[Math.max(indexCapacity, 1)];
+			cullMode = Renderer.CULL_NONE;
+		}
 
+		//returns the index of the new vertex
+		public int addVertex(float x, float y, float z, float w, float u, float v)
+		{
+			if(numVertices * POSITION_SIZE == positions.length)
+			{
+				positions = Arrays.copyOf(positions, positions.length * 2);
+				texCoords = Arrays.copyOf(texCoords, texCoords.length * 2);
+			}
+			int p = numVertices * POSITION_SIZE;
+			positions[p] = x;
+			positions[p + 1] = y;
+			positions[p + 2] = z;
+			positions[p + 3] = w;
+			int t = numVertices * TEXCOORD_SIZE;
+			texCoords[t] = u;
+			texCoords[t + 1] = v;
+			return numVertices++;
+		}
+
+		public int addVertex(float x, float y, float z, float u, float v)
+		{
+			return addVertex(x, y, z, 1, u, v);
+		}
+
+		public int addVertex(Vertex v)
+		{
+			return addVertex(v.getX(), v.getY(), v.getZ(), v.getW(), v.getTexCoord().getX(), v.getTexCoord().getY());
+		}
+
+		public Builder addIndex(int index)
+		{
+			if(numIndices == indices.length)
+			{
+				indices = Arrays.copyOf(indices, indices.length * 2);
+			}
+			indices[numIndices++] = index;
+			return this;
+		}
+
+		public Builder addTriangle(int a, int b, int c)
+		{
+			return addIndex(a).addIndex(b).addIndex(c);
+		}
+
+		public Builder setCullMode(int cullMode)
+		{
+			this.cullMode = cullMode;
+			return this;
+		}
+
+		public int getNumVertices()
+		{
+			return numVertices;
+		}
+
+		public int getNumIndices()
+		{
+			return numIndices;
+		}
+
+		public Mesh build()
+		{
+			Mesh mesh = new Mesh(this);
+			mesh.setCullMode(cullMode);
+			return mesh;
+		}
+	}
+
+	private final float[] positions;
+	private final float[] texCoords;
+	private final int[] indices;
+	private final int numVertices;
+	private int cullMode;
+	//model space bounding box and a sphere around its center that encloses every vertex
+	private float minX, minY, minZ;
+	private float maxX, maxY, maxZ;
+	private float radius;
+	//every vertex an index refers to in ascending order, the only ones a draw transforms
+	private int[] referenced;
+	//clip space copy of every vertex, refilled by each draw
+	private Vertex[] clipSpace;
+	//model view projection of the current draw
+	private Matrix4f modelViewProjection;
+
+	public int getIndex(int i) { return indices[i]; }
+	public int getNumIndices() { return indices.length; }
+	public int getNumVertices() { return numVertices; }
+
+	//the arrays are the mesh's own storage, call refresh() after writing positions or indices directly
+	public float[] getPositions() { return positions; }
+	public float[] getTexCoords() { return texCoords; }
+	public int[] getIndices() { return indices; }
+
+	//converts vertex and index lists, kept for code that still builds meshes that way
 	public Mesh(List<Vertex> vertices, List<Integer> indices)
 	{
-		this.vertices = vertices;
+		this(toBuilder(vertices, indices));
+	}
+
+	private Mesh(Builder builder)
+	{
+		this(Arrays.copyOf(builder.positions, builder.numVertices * POSITION_SIZE),
+				Arrays.copyOf(builder.texCoords, builder.numVertices * TEXCOORD_SIZE),
+				Arrays.copyOf(builder.indices, builder.numIndices));
+	}
+
+	private Mesh(float[] positions, float[] texCoords, int[] indices)
+	{
+		this.positions = positions;
+		this.texCoords = texCoords;
 		this.indices = indices;
+		numVertices = positions.length / POSITION_SIZE;
+		cullMode = Renderer.CULL_NONE;
+		clipSpace = new Vertex[numVertices];
+		for(int a=0;a<clipSpace.length;a++)
+		{
+			clipSpace[a] = new Vertex(new Vector4f(0, 0, 0, 0), new Vector4f(0, 0, 0, 0));
+		}
+		modelViewProjection = new Matrix4f();
+		refresh();
+	}
+
+	private static Builder toBuilder(List<Vertex> vertices, List<Integer> indices)
+	{
+		Builder builder = new Builder(vertices.size(), indices.size());
+		for(int a=0;a<vertices.size();a++)
+		{
+			builder.addVertex(vertices.get(a));
+		}
+		for(int a=0;a<indices.size();a++)
+		{
+			builder.addIndex(indices.get(a));
+		}
+		return builder;
 	}
-	
+
+	//allocates, meant for tools and setup code, drawing reads the arrays
+	public Vertex getVertex(int i)
+	{
+		int p = i * POSITION_SIZE;
+		int t = i * TEXCOORD_SIZE;
+		return new Vertex(new Vector4f(positions[p], positions[p + 1], positions[p + 2], positions[p + 3]),
+				new Vector4f(texCoords[t], texCoords[t + 1], 0, 0));
+	}
+
+	public void setPosition(int i, float x, float y, float z, float w)
+	{
+		int p = i * POSITION_SIZE;
+		positions[p] = x;
+		positions[p + 1] = y;
+		positions[p + 2] = z;
+		positions[p + 3] = w;
+	}
+
+	public void setTexCoord(int i, float u, float v)
+	{
+		int t = i * TEXCOORD_SIZE;
+		texCoords[t] = u;
+		texCoords[t + 1] = v;
+	}
+
+	//must be called after positions or indices were changed, recomputes the bounds and the referenced vertices
+	public void refresh()
+	{
+		boolean[] used = new boolean[numVertices];
+		int count = 0;
+		for(int a=0;a<indices.length;a++)
+		{
+			if(!used[indices[a]])
+			{
+				used[indices[a]] = true;
+				count++;
+			}
+		}
+		if(referenced == null || referenced.length != count)
+		{
+			referenced = new int[count];
+		}
+		count = 0;
+		for(int a=0;a<numVertices;a++)
+		{
+			if(used[a])
+			{
+				referenced[count++] = a;
+			}
+		}
+
+		minX = minY = minZ = Float.MAX_VALUE;
+		maxX = maxY = maxZ = -Float.MAX_VALUE;
+		for(int p=0;p<positions.length;p+=POSITION_SIZE)
+		{
+			minX = Math.min(minX, positions[p]);
+			minY = Math.min(minY, positions[p + 1]);
+			minZ = Math.min(minZ, positions[p + 2]);
+			maxX = Math.max(maxX, positions[p]);
+			maxY = Math.max(maxY, positions[p + 1]);
+			maxZ = Math.max(maxZ, positions[p + 2]);
+		}
+
+		float radiusSquared = 0;
+		for(int p=0;p<positions.length;p+=POSITION_SIZE)
+		{
+			float dx = positions[p] - getCenterX();
+			float dy = positions[p + 1] - getCenterY();
+			float dz = positions[p + 2] - getCenterZ();
+			radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy + dz * dz);
+		}
+		radius = (float)Math.sqrt(radiusSquared);
+	}
+
+	public float getMinX() { return minX; }
+	public float getMinY() { return minY; }
+	public float getMinZ() { return minZ; }
+	public float getMaxX() { return maxX; }
+	public float getMaxY() { return maxY; }
+	public float getMaxZ() { return maxZ; }
+	public float getCenterX() { return (minX + maxX) * 0.5f; }
+	public float getCenterY() { return (minY + maxY) * 0.5f; }
+	public float getCenterZ() { return (minZ + maxZ) * 0.5f; }
+	public float getRadius() { return radius; }
+
+	public void setCullMode(int cullMode)
+	{
+		this.cullMode = cullMode;
+	}
+
+	public int getCullMode()
+	{
+		return cullMode;
+	}
+
 	public void draw(Renderer render, Matrix4f viewProjection, Matrix4f transform, Bitmap texture)
 	{
-		Matrix4f modelViewProjection = viewProjection.mul(transform);
-		for(int a=0;a<indices.size();a+=3)
+		drawTransformed(render, viewProjection.mulInto(transform, modelViewProjection), texture);
+	}
+
+	//instanceTransforms holds one row major 4x4 model matrix (16 floats) per instance
+	public void drawInstanced(Renderer render, Matrix4f viewProjection, float[] instanceTransforms, Bitmap texture)
+	{
+		drawInstanced(render, viewProjection, instanceTransforms, instanceTransforms.length / 16, texture);
+	}
+
+	public void drawInstanced(Renderer render, Matrix4f viewProjection, float[] instanceTransforms, int numInstances, Bitmap texture)
+	{
+		for(int i=0;i<numInstances;i++)
+		{
+			viewProjection.mulInto(instanceTransforms, i * 16, modelViewProjection);
+			drawTransformed(render, modelViewProjection, texture);
+		}
+	}
+
+	private void drawTransformed(Renderer render, Matrix4f modelViewProjection, Bitmap texture)
+	{
+		if(numVertices == 0 || render.isOutsideFrustum(modelViewProjection, this))
+		{
+			return;
+		}
+		if(render.isBoxOccluded(modelViewProjection, minX, minY, minZ, maxX, maxY, maxZ))
+		{
+			return;
+		}
+		render.getStats().meshesDrawn++;
+
+		//transform each referenced vertex once, triangles sharing it read the cached result
+		long start = render.isProfiling() ? System.nanoTime() : 0;
+		for(int r=0;r<referenced.length;r++)
+		{
+			int a = referenced[r];
+			Vertex v = clipSpace[a];
+			modelViewProjection.transformInto(positions, a * POSITION_SIZE, v.getPosition());
+			v.getTexCoord().setXYZW(texCoords[a * TEXCOORD_SIZE], texCoords[a * TEXCOORD_SIZE + 1], 0, 0);
+		}
+		if(render.isProfiling())
+		{
+			render.getStats().addStageNanos(RenderStats.STAGE_TRANSFORM, System.nanoTime() - start);
+		}
+		//one transform per index before, every index past a vertex's first reference is a transform saved
+		render.getStats().verticesTransformed += referenced.length;
+		render.getStats().transformsSaved += indices.length - referenced.length;
+
+		for(int a=0;a<indices.length;a+=3)
 		{
-			render.drawTriangle(vertices.get(indices.get(a)).transform(modelViewProjection), 
-					vertices.get(indices.get(a + 1)).transform(modelViewProjection), 
-					vertices.get(indices.get(a + 2)).transform(modelViewProjection), 
-					texture);
+			render.drawTriangle(clipSpace[indices[a]],
+					clipSpace[indices[a + 1]],
+					clipSpace[indices[a + 2]],
+					texture, cullMode);
 		}
 	}
 }
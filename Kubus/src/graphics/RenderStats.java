@@ -0,0 +1,200 @@
+package graphics;
+
+//per frame pipeline counters, reset by whoever owns the frame loop
+//stage times are only measured while the renderer is profiling, the counters always are
+public class RenderStats
+{
+	//clip space transform of mesh vertices
+	public static final int STAGE_TRANSFORM = 0;
+	//triangles that cross a clip plane outside the guard band
+	public static final int STAGE_CLIP = 1;
+	//Gradient and Edge setup of the scanline path
+	public static final int STAGE_SETUP = 2;
+	//scanline fill, the half-space and fixed point rasterizers count setup in here too
+	public static final int STAGE_FILL = 3;
+	//Display.swap, time the render thread spends handing the frame over
+	public static final int STAGE_PRESENT = 4;
+	public static final int STAGES = 5;
+	private static final String[] STAGE_NAMES = { "transform", "clip", "setup", "fill", "present" };
+
+	int trianglesSubmitted;
+	int trianglesOutside;
+	int trianglesClipped;
+	int trianglesCulled;
+	int trianglesRasterized;
+	int trianglesOccluded;
+	int meshesOccluded;
+	int meshesCulled;
+	int meshesDrawn;
+	int verticesTransformed;
+	int transformsSaved;
+	long pixelsWritten;
+	int pixelsCovered;
+	private final long[] stageNanos = new long[STAGES];
+
+	public void reset()
+	{
+		trianglesSubmitted = 0;
+		trianglesOutside = 0;
+		trianglesClipped = 0;
+		trianglesCulled = 0;
+		trianglesRasterized = 0;
+		trianglesOccluded = 0;
+		meshesOccluded = 0;
+		meshesCulled = 0;
+		meshesDrawn = 0;
+		verticesTransformed = 0;
+		transformsSaved = 0;
+		pixelsWritten = 0;
+		pixelsCovered = 0;
+		for(int a=0;a<STAGES;a++)
+		{
+			stageNanos[a] = 0;
+		}
+	}
+
+	public void set(RenderStats other)
+	{
+		reset();
+		add(other);
+		pixelsCovered = other.pixelsCovered;
+	}
+
+	//sums the counters of a tile into the frame's, pixels covered is a per frame value and stays
+	void add(RenderStats other)
+	{
+		trianglesSubmitted += other.trianglesSubmitted;
+		trianglesOutside += other.trianglesOutside;
+		trianglesClipped += other.trianglesClipped;
+		trianglesCulled += other.trianglesCulled;
+		trianglesRasterized += other.trianglesRasterized;
+		trianglesOccluded += other.trianglesOccluded;
+		meshesOccluded += other.meshesOccluded;
+		meshesCulled += other.meshesCulled;
+		meshesDrawn += other.meshesDrawn;
+		verticesTransformed += other.verticesTransformed;
+		transformsSaved += other.transformsSaved;
+		pixelsWritten += other.pixelsWritten;
+		for(int a=0;a<STAGES;a++)
+		{
+			stageNanos[a] += other.stageNanos[a];
+		}
+	}
+
+	void addStageNanos(int stage, long nanos)
+	{
+		stageNanos[stage] += nanos;
+	}
+
+	//in binned mode setup and fill are summed over every thread, so they can add up to more than the frame took
+	public long getStageNanos(int stage)
+	{
+		return stageNanos[stage];
+	}
+
+	public static String getStageName(int stage)
+	{
+		return STAGE_NAMES[stage];
+	}
+
+	public int getTrianglesSubmitted()
+	{
+		return trianglesSubmitted;
+	}
+
+	//triangles entirely outside one clip plane, dropped before clipping
+	public int getTrianglesOutside()
+	{
+		return trianglesOutside;
+	}
+
+	//triangles that went through the clipper, the pieces it returns are counted as rasterized
+	public int getTrianglesClipped()
+	{
+		return trianglesClipped;
+	}
+
+	public int getTrianglesCulled()
+	{
+		return trianglesCulled;
+	}
+
+	//triangles handed to a rasterizer or the tile bins, including ones the coarse depth buffer rejects later
+	public int getTrianglesRasterized()
+	{
+		return trianglesRasterized;
+	}
+
+	//triangles rejected by the coarse depth buffer, in binned mode counted once per tile they touch
+	public int getTrianglesOccluded()
+	{
+		return trianglesOccluded;
+	}
+
+	public int getMeshesOccluded()
+	{
+		return meshesOccluded;
+	}
+
+	//mesh draws rejected by their bounds before any vertex was transformed
+	public int getMeshesCulled()
+	{
+		return meshesCulled;
+	}
+
+	//mesh draws that passed frustum and occlusion culling
+	public int getMeshesDrawn()
+	{
+		return meshesDrawn;
+	}
+
+	public int getVerticesTransformed()
+	{
+		return verticesTransformed;
+	}
+
+	//index reads served from the post transform cache instead of a fresh transform
+	public int getTransformsSaved()
+	{
+		return transformsSaved;
+	}
+
+	//pixels that passed the depth test and were written, a pixel drawn over twice counts twice
+	public long getPixelsWritten()
+	{
+		return pixelsWritten;
+	}
+
+	//distinct pixels written this frame, only estimated by Renderer.countCoveredPixels
+	public int getPixelsCovered()
+	{
+		return pixelsCovered;
+	}
+
+	//writes per covered pixel, 1 means every pixel was drawn exactly once
+	public float getOverdraw()
+	{
+		return pixelsCovered == 0 ? 0 : pixelsWritten / (float)pixelsCovered;
+	}
+
+	public String toString()
+	{
+		String s = "triangles " + trianglesSubmitted + " outside " + trianglesOutside + " clipped " + trianglesClipped +
+				" culled " + trianglesCulled + " rasterized " + trianglesRasterized +
+				" occluded " + trianglesOccluded + " meshes drawn " + meshesDrawn + " culled " + meshesCulled +
+				" occluded " + meshesOccluded +
+				" transforms " + verticesTransformed + " saved " + transformsSaved + " pixels " + pixelsWritten;
+		if(pixelsCovered > 0)
+		{
+			s += String.format(" overdraw %.2f", getOverdraw());
+		}
+		for(int a=0;a<STAGES;a++)
+		{
+			if(stageNanos[a] > 0)
+			{
+				s += String.format(" %s %.3f ms", STAGE_NAMES[a], stageNanos[a] / 1e6);
+			}
+		}
+		return s;
+	}
+}
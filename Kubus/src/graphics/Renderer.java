@@ -1,75 +1,605 @@
 package graphics;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class Renderer extends Bitmap
 {
+	public static final int TILE_SIZE = 64;
+
+	public static final int RASTER_SCANLINE = 0;
+	public static final int RASTER_HALFSPACE = 1;
+	//scanline with vertices snapped to 1/16 pixel and an exact integer edge walk
+	public static final int RASTER_FIXED = 2;
+
+	//front faces wind clockwise on screen, i.e. have a positive triangleArea after the screen space transform
+	public static final int CULL_NONE = 0;
+	public static final int CULL_BACK = 1;
+	public static final int CULL_FRONT = 2;
+
+	//longest run of pixels the scanline path interpolates texcoords affinely between two perspective divides
+	public static final int MAX_PERSPECTIVE_STEP = 64;
+
 	private float[] depthBuffer;
+	//a depth value only counts if its tag matches generation, anything else reads as cleared
+	//null unless depth tagging is enabled, the rasterizers then never touch it
+	private int[] depthGeneration;
+	private int generation;
+	private boolean depthTagging;
+	private boolean colorClear;
+	private int rasterMode;
+	private int textureFilter;
+	private int perspectiveStep;
+	//null unless span batching is enabled
+	private SpanRenderer spans;
+	private HalfSpaceRasterizer halfSpace;
+	private FixedPointRasterizer fixedPoint;
+	private Clipper clipper;
+	private RenderStats stats;
+	private Matrix4f screenSpaceTransform;
+	//screen space vertices of the triangle fillTriangle is working on
+	private Vertex[] screenSpace;
+	//null unless occlusion culling is enabled
+	private CoarseDepthBuffer coarseDepth;
+	private boolean frustumCulling;
+	private Frustum frustum;
+
+	//tile binned mode, triangles are queued and rasterized per screen tile on flush()
+	private boolean binning;
+	private int threadCount;
+	private ForkJoinPool pool;
+	private TileBins bins;
+	//counters of each tile's rasterization, summed into stats on flush so threads never share one
+	private RenderStats[] tileStats;
+	//stage timing, off unless asked for since it reads the clock several times per triangle
+	private boolean profiling;
 
 	public Renderer(int w, int h) 
 	{
-		super(w, h);
+		this(w, h, new int[w * h]);
+	}
+
+	public Renderer(int w, int h, int[] pixels)
+	{
+		super(w, h, pixels);
 		depthBuffer = new float[w * h];
+		colorClear = true;
+		threadCount = 1;
+		rasterMode = RASTER_SCANLINE;
+		textureFilter = Sampler.DIRECT;
+		perspectiveStep = 1;
+		halfSpace = new HalfSpaceRasterizer(this);
+		fixedPoint = new FixedPointRasterizer(this);
+		clipper = new Clipper();
+		stats = new RenderStats();
+		frustumCulling = true;
+		frustum = new Frustum();
+		screenSpaceTransform = new Matrix4f().initScreenSpaceTransform(w / 2, h / 2);
+		screenSpace = new Vertex[3];
+		for(int a=0;a<screenSpace.length;a++)
+		{
+			screenSpace[a] = new Vertex(new Vector4f(0, 0, 0, 0), null);
+		}
 	}
 
-	public void clearDepthBuffer()
+	//draws the following frames into another color buffer, depth and every other state stay
+	//without color clearing the new buffer still holds whatever frame was last drawn into it
+	public void setColorBuffer(int[] pixels)
+	{
+		flush();
+		setPixels(pixels);
+	}
+
+	public RenderStats getStats()
+	{
+		return stats;
+	}
+
+	public void setProfiling(boolean profiling)
+	{
+		this.profiling = profiling;
+	}
+
+	public boolean isProfiling()
 	{
-		for(int a=0;a<depthBuffer.length;a++)
+		return profiling;
+	}
+
+	//estimates the pixels the frame wrote into stats for the overdraw ratio from every rowStride-th row of the depth
+	//buffer, 1 reads the whole buffer and counts exactly
+	public int countCoveredPixels(int rowStride)
+	{
+		flush();
+		int w = getWidth(), h = getHeight();
+		int covered = 0, rows = 0;
+		for(int y=0;y<h;y+=rowStride)
 		{
-			depthBuffer[a] = Float.MAX_VALUE;
+			for(int a=y*w;a<(y+1)*w;a++)
+			{
+				if((depthGeneration == null || depthGeneration[a] == generation) && depthBuffer[a] != Float.MAX_VALUE)
+				{
+					covered++;
+				}
+			}
+			rows++;
 		}
+		covered = rows == 0 ? 0 : (int)((long)covered * h / rows);
+		stats.pixelsCovered = covered;
+		return covered;
 	}
 
-	public void drawTriangle(Vertex v1, Vertex v2, Vertex v3, Bitmap texture)
+	public void setRasterMode(int mode)
+	{
+		if(mode != RASTER_SCANLINE && mode != RASTER_HALFSPACE && mode != RASTER_FIXED)
+		{
+			throw new IllegalArgumentException("unknown raster mode " + mode);
+		}
+		flush();
+		rasterMode = mode;
+	}
+
+	public int getRasterMode()
+	{
+		return rasterMode;
+	}
+
+	public void setTextureFilter(int filter)
+	{
+		if(filter < Sampler.DIRECT || filter > Sampler.TRILINEAR)
+		{
+			throw new IllegalArgumentException("unknown texture filter " + filter);
+		}
+		flush();
+		textureFilter = filter;
+	}
+
+	public int getTextureFilter()
 	{
-		boolean v1Inside = v1.IsInsideViewFrustum();
-		boolean v2Inside = v2.IsInsideViewFrustum();
-		boolean v3Inside = v3.IsInsideViewFrustum();
+		return textureFilter;
+	}
 
-		if(v1Inside && v2Inside && v3Inside)
+	//1 divides at every pixel, larger values only every perspectiveStep pixels of a span (typically 8 or 16)
+	//only the float scanline path subdivides, the half-space and fixed point paths are always exact
+	public void setPerspectiveStep(int pixels)
+	{
+		if(pixels < 1 || pixels > MAX_PERSPECTIVE_STEP)
+		{
+			throw new IllegalArgumentException("perspective step must be in 1.." + MAX_PERSPECTIVE_STEP + ", got " + pixels);
+		}
+		flush();
+		perspectiveStep = pixels;
+	}
+
+	public int getPerspectiveStep()
+	{
+		return perspectiveStep;
+	}
+
+	//draws unfiltered, exact scanline spans through a SpanRenderer, vectorized if jdk.incubator.vector is available
+	//the batched spans evaluate attributes as start + step * i, so they can differ slightly from the accumulated default
+	public void setSpanBatching(boolean enabled)
+	{
+		flush();
+		spans = enabled ? SpanRenderer.create() : null;
+		halfSpace.setSpanRenderer(spans);
+	}
+
+	public boolean isSpanBatching()
+	{
+		return spans != null;
+	}
+
+	//"scalar" or "vector xN", whichever backend span batching would use
+	public static String getSpanBackend()
+	{
+		return SpanRenderer.create().getName();
+	}
+
+	public void setBinning(boolean binning)
+	{
+		if(!binning)
+		{
+			flush();
+		}
+		else if(bins == null)
+		{
+			bins = new TileBins(getWidth(), getHeight(), TILE_SIZE);
+			tileStats = new RenderStats[bins.getNumTiles()];
+			for(int a=0;a<tileStats.length;a++)
+			{
+				tileStats[a] = new RenderStats();
+			}
+		}
+		this.binning = binning;
+	}
+
+	public void setOcclusionCulling(boolean enabled)
+	{
+		flush();
+		if(!enabled)
+		{
+			coarseDepth = null;
+		}
+		else if(coarseDepth == null)
+		{
+			coarseDepth = new CoarseDepthBuffer(this);
+		}
+		halfSpace.setCoarseDepth(coarseDepth);
+		fixedPoint.setCoarseDepth(coarseDepth);
+	}
+
+	public boolean isOcclusionCulling()
+	{
+		return coarseDepth != null;
+	}
+
+	public boolean isBinning()
+	{
+		return binning;
+	}
+
+	public void setThreadCount(int threads)
+	{
+		if(threads < 1)
+		{
+			threads = 1;
+		}
+		if(threads == threadCount)
 		{
-			fillTriangle(v1, v2, v3, texture);
 			return;
 		}
+		flush();
+		if(pool != null)
+		{
+			pool.shutdown();
+			pool = null;
+		}
+		threadCount = threads;
+	}
 
-		if(!v1Inside && !v2Inside && !v3Inside)
+	public int getThreadCount()
+	{
+		return threadCount;
+	}
+
+	//rasterizes every queued triangle, must be called before the frame is presented
+	public void flush()
+	{
+		if(!binning || bins.isEmpty())
 		{
 			return;
 		}
-		
-		List<Vertex> vertices = new ArrayList<>();
-		List<Vertex> auxList = new ArrayList<>();
 
-		vertices.add(v1);
-		vertices.add(v2);
-		vertices.add(v3);
+		if(threadCount == 1)
+		{
+			for(int a=0;a<bins.getNumTiles();a++)
+			{
+				rasterTile(a);
+			}
+		}
+		else
+		{
+			if(pool == null)
+			{
+				pool = new ForkJoinPool(threadCount);
+			}
+			pool.invoke(new TileTask(0, bins.getNumTiles()));
+		}
+		for(int a=0;a<tileStats.length;a++)
+		{
+			stats.add(tileStats[a]);
+			tileStats[a].reset();
+		}
+		bins.clear();
+	}
+
+	private void rasterTile(int tile)
+	{
+		List<TileBins.Triangle> bin = bins.getBin(tile);
+		int clipMinX = bins.getTileMinX(tile);
+		int clipMinY = bins.getTileMinY(tile);
+		int clipMaxX = Math.min(clipMinX + bins.getTileSize(), getWidth());
+		int clipMaxY = Math.min(clipMinY + bins.getTileSize(), getHeight());
+
+		RenderStats counters = tileStats[tile];
 
-		if(clipPolygonAxis(vertices, auxList, 0) && clipPolygonAxis(vertices, auxList, 1) && clipPolygonAxis(vertices, auxList, 2))
+		for(int a=0;a<bin.size();a++)
 		{
-			Vertex iVertex = vertices.get(0);
+			TileBins.Triangle t = bin.get(a);
+			rasterTriangle(t.minY, t.midY, t.maxY, t.side, t.texture, clipMinX, clipMinY, clipMaxX, clipMaxY, counters);
+		}
+	}
 
-			for(int a=1;a<vertices.size()-1;a++)
+	private class TileTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private final int start;
+		private final int end;
+
+		public TileTask(int start, int end)
+		{
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(end - start == 1)
 			{
-				fillTriangle(iVertex, vertices.get(a), vertices.get(a + 1), texture);
+				if(!bins.getBin(start).isEmpty())
+				{
+					rasterTile(start);
+				}
+				return;
 			}
+			int mid = (start + end) >>> 1;
+			invokeAll(new TileTask(start, mid), new TileTask(mid, end));
 		}
 	}
 
+	//clears color unless disabled, e.g. when the scene is known to cover the whole viewport
+	public void clear()
+	{
+		if(colorClear)
+		{
+			fill((byte)0);
+		}
+		clearDepthBuffer();
+	}
+
+	public void setColorClear(boolean colorClear)
+	{
+		this.colorClear = colorClear;
+	}
+
+	public boolean isColorClear()
+	{
+		return colorClear;
+	}
 
+	public void clearDepthBuffer()
+	{
+		if(depthTagging && generation < Integer.MAX_VALUE)
+		{
+			generation++;
+		}
+		else
+		{
+			Arrays.fill(depthBuffer, Float.MAX_VALUE);
+			if(depthTagging)
+			{
+				generation = 0;
+				Arrays.fill(depthGeneration, 0);
+			}
+		}
+		if(coarseDepth != null)
+		{
+			coarseDepth.clear();
+		}
+	}
 
-	private void fillTriangle(Vertex v1, Vertex v2, Vertex v3, Bitmap texture)
+	//with tagging on clearDepthBuffer() only bumps the generation instead of rewriting every depth value
+	public void setDepthTagging(boolean depthTagging)
 	{
-		Matrix4f screenSpaceTransform = new Matrix4f().initScreenSpaceTransform(getWidth() / 2, getHeight() / 2);
-		Vertex minY = v1.transform(screenSpaceTransform).perspectiveDivide();
-		Vertex midY = v2.transform(screenSpaceTransform).perspectiveDivide();
-		Vertex maxY = v3.transform(screenSpaceTransform).perspectiveDivide();
+		flush();
+		if(!this.depthTagging && depthTagging)
+		{
+			//everything in the depth buffer belongs to the current generation
+			depthGeneration = new int[depthBuffer.length];
+			Arrays.fill(depthGeneration, generation);
+		}
+		else if(this.depthTagging && !depthTagging)
+		{
+			//stale values have to read as cleared without their tags
+			for(int a=0;a<depthBuffer.length;a++)
+			{
+				if(depthGeneration[a] != generation)
+				{
+					depthBuffer[a] = Float.MAX_VALUE;
+				}
+			}
+			depthGeneration = null;
+		}
+		this.depthTagging = depthTagging;
+	}
 
-//		if(minY.triangleArea(midY, maxY) <= 0)
-//		{
-//			return;
-//		}
+	//the span loops only compare depths, with tagging on every span first resets the values of its pixels that
+	//are left over from an earlier generation, index end is exclusive
+	void refreshDepth(int start, int end)
+	{
+		if(depthGeneration == null)
+		{
+			return;
+		}
+		for(int a=start;a<end;a++)
+		{
+			if(depthGeneration[a] != generation)
+			{
+				depthBuffer[a] = Float.MAX_VALUE;
+				depthGeneration[a] = generation;
+			}
+		}
+	}
+
+	public boolean isDepthTagging()
+	{
+		return depthTagging;
+	}
+
+	float[] getDepthBuffer()
+	{
+		return depthBuffer;
+	}
+
+	//null while depth tagging is off
+	int[] getDepthGeneration()
+	{
+		return depthGeneration;
+	}
+
+	int getGeneration()
+	{
+		return generation;
+	}
+
+	//meshes whose bounds are outside the view are skipped whole instead of clipping each of their triangles away
+	public void setFrustumCulling(boolean enabled)
+	{
+		frustumCulling = enabled;
+	}
+
+	public boolean isFrustumCulling()
+	{
+		return frustumCulling;
+	}
+
+	//tests the mesh's bounding sphere, then its box, against the frustum in model space
+	public boolean isOutsideFrustum(Matrix4f modelViewProjection, Mesh mesh)
+	{
+		if(!frustumCulling)
+		{
+			return false;
+		}
+		frustum.set(modelViewProjection);
+		if(frustum.isSphereOutside(mesh.getCenterX(), mesh.getCenterY(), mesh.getCenterZ(), mesh.getRadius()) ||
+				frustum.isBoxOutside(mesh.getMinX(), mesh.getMinY(), mesh.getMinZ(), mesh.getMaxX(), mesh.getMaxY(), mesh.getMaxZ()))
+		{
+			stats.meshesCulled++;
+			return true;
+		}
+		return false;
+	}
+
+	//tests a model space box against the coarse depth buffer, only meaningful while drawing immediately
+	public boolean isBoxOccluded(Matrix4f modelViewProjection, float minX, float minY, float minZ,
+			float maxX, float maxY, float maxZ)
+	{
+		if(coarseDepth == null || binning)
+		{
+			return false;
+		}
+
+		float halfWidth = getWidth() / 2;
+		float halfHeight = getHeight() / 2;
+		float screenMinX = Float.MAX_VALUE, screenMinY = Float.MAX_VALUE, minDepth = Float.MAX_VALUE;
+		float screenMaxX = -Float.MAX_VALUE, screenMaxY = -Float.MAX_VALUE;
+
+		for(int a=0;a<8;a++)
+		{
+			float x = (a & 1) == 0 ? minX : maxX;
+			float y = (a & 2) == 0 ? minY : maxY;
+			float z = (a & 4) == 0 ? minZ : maxZ;
+			float w = modelViewProjection.get(3, 0) * x + modelViewProjection.get(3, 1) * y + modelViewProjection.get(3, 2) * z + modelViewProjection.get(3, 3);
+			float cz = modelViewProjection.get(2, 0) * x + modelViewProjection.get(2, 1) * y + modelViewProjection.get(2, 2) * z + modelViewProjection.get(2, 3);
+			//a box crossing the near plane has no usable screen bounds
+			if(w <= 0 || cz < -w)
+			{
+				return false;
+			}
+			float cx = modelViewProjection.get(0, 0) * x + modelViewProjection.get(0, 1) * y + modelViewProjection.get(0, 2) * z + modelViewProjection.get(0, 3);
+			float cy = modelViewProjection.get(1, 0) * x + modelViewProjection.get(1, 1) * y + modelViewProjection.get(1, 2) * z + modelViewProjection.get(1, 3);
+			float sx = halfWidth * cx / w + halfWidth - 0.5f;
+			float sy = -halfHeight * cy / w + halfHeight - 0.5f;
+
+			screenMinX = Math.min(screenMinX, sx);
+			screenMaxX = Math.max(screenMaxX, sx);
+			screenMinY = Math.min(screenMinY, sy);
+			screenMaxY = Math.max(screenMaxY, sy);
+			minDepth = Math.min(minDepth, cz / w);
+		}
+
+		int x0 = Math.max(0, (int)Math.ceil(screenMinX) - 1);
+		int x1 = Math.min(getWidth() - 1, (int)Math.ceil(screenMaxX));
+		int y0 = Math.max(0, (int)Math.ceil(screenMinY));
+		int y1 = Math.min(getHeight() - 1, (int)Math.ceil(screenMaxY) - 1);
+		if(x0 > x1 || y0 > y1)
+		{
+			return false;
+		}
+
+		if(coarseDepth.isOccluded(x0, y0, x1, y1, minDepth))
+		{
+			stats.meshesOccluded++;
+			return true;
+		}
+		return false;
+	}
+
+	public void drawTriangle(Vertex v1, Vertex v2, Vertex v3, Bitmap texture)
+	{
+		drawTriangle(v1, v2, v3, texture, CULL_NONE);
+	}
+
+	public void drawTriangle(Vertex v1, Vertex v2, Vertex v3, Bitmap texture, int cullMode)
+	{
+		stats.trianglesSubmitted++;
+		int c1 = clipper.outcode(v1);
+		int c2 = clipper.outcode(v2);
+		int c3 = clipper.outcode(v3);
+
+		if((c1 | c2 | c3) == 0)
+		{
+			fillTriangle(v1, v2, v3, texture, cullMode);
+			return;
+		}
+
+		if((c1 & c2 & c3) != 0)
+		{
+			stats.trianglesOutside++;
+			return;
+		}
+
+		stats.trianglesClipped++;
+		long start = profiling ? System.nanoTime() : 0;
+		int count = clipper.clip(v1, v2, v3, c1 | c2 | c3);
+		if(profiling)
+		{
+			stats.addStageNanos(RenderStats.STAGE_CLIP, System.nanoTime() - start);
+		}
+		Vertex iVertex = clipper.getVertex(0);
+
+		for(int a=1;a<count-1;a++)
+		{
+			fillTriangle(iVertex, clipper.getVertex(a), clipper.getVertex(a + 1), texture, cullMode);
+		}
+	}
+
+	//triangles within guardBand times the viewport are scissored while rasterizing instead of clipped
+	public void setGuardBand(float guardBand)
+	{
+		clipper.setGuardBand(guardBand);
+	}
+
+	public float getGuardBand()
+	{
+		return clipper.getGuardBand();
+	}
+
+	private void fillTriangle(Vertex v1, Vertex v2, Vertex v3, Bitmap texture, int cullMode)
+	{
+		Vertex minY = v1.transform(screenSpaceTransform, screenSpace[0]).perspectiveDivide(screenSpace[0]);
+		Vertex midY = v2.transform(screenSpaceTransform, screenSpace[1]).perspectiveDivide(screenSpace[1]);
+		Vertex maxY = v3.transform(screenSpaceTransform, screenSpace[2]).perspectiveDivide(screenSpace[2]);
+
+		if(rasterMode != RASTER_SCANLINE)
+		{
+			FixedPointRasterizer.snap(minY);
+			FixedPointRasterizer.snap(midY);
+			FixedPointRasterizer.snap(maxY);
+		}
+
+		if(cullMode != CULL_NONE)
+		{
+			float area = minY.triangleArea(midY, maxY);
+			if(cullMode == CULL_BACK ? area <= 0 : area >= 0)
+			{
+				stats.trianglesCulled++;
+				return;
+			}
+		}
 
 		if(maxY.getY() < midY.getY())
 		{
@@ -92,21 +622,91 @@ public class Renderer extends Bitmap
 			midY = temp;
 		}
 
-		scanTriangle(minY, midY, maxY, minY.triangleArea(maxY, midY) >= 0, texture);
+		boolean side = minY.triangleArea(maxY, midY) >= 0;
+		stats.trianglesRasterized++;
+		if(binning)
+		{
+			bins.add(minY, midY, maxY, side, texture);
+			return;
+		}
+		rasterTriangle(minY, midY, maxY, side, texture, 0, 0, getWidth(), getHeight(), stats);
 	}
 
-	private void scanTriangle(Vertex minY, Vertex midY, Vertex maxY, boolean side, Bitmap texture)
+	//counters is the frame's stats when drawing immediately and the tile's when binned
+	private void rasterTriangle(Vertex minY, Vertex midY, Vertex maxY, boolean side, Bitmap texture,
+			int clipMinX, int clipMinY, int clipMaxX, int clipMaxY, RenderStats counters)
 	{
+		if(coarseDepth != null && isOccluded(minY, midY, maxY, clipMinX, clipMinY, clipMaxX, clipMaxY))
+		{
+			counters.trianglesOccluded++;
+			return;
+		}
+
+		if(rasterMode == RASTER_SCANLINE)
+		{
+			scanTriangle(minY, midY, maxY, side, texture, clipMinX, clipMinY, clipMaxX, clipMaxY, counters);
+			return;
+		}
+
+		long start = profiling ? System.nanoTime() : 0;
+		if(rasterMode == RASTER_HALFSPACE)
+		{
+			counters.pixelsWritten += halfSpace.rasterize(minY, midY, maxY, texture, textureFilter,
+					clipMinX, clipMinY, clipMaxX, clipMaxY);
+		}
+		else
+		{
+			counters.pixelsWritten += fixedPoint.rasterize(minY, midY, maxY, side, texture, textureFilter,
+					clipMinX, clipMinY, clipMaxX, clipMaxY);
+		}
+		if(profiling)
+		{
+			counters.addStageNanos(RenderStats.STAGE_FILL, System.nanoTime() - start);
+		}
+	}
+
+	private boolean isOccluded(Vertex minY, Vertex midY, Vertex maxY,
+			int clipMinX, int clipMinY, int clipMaxX, int clipMaxY)
+	{
+		float minX = Math.min(minY.getX(), Math.min(midY.getX(), maxY.getX()));
+		float maxX = Math.max(minY.getX(), Math.max(midY.getX(), maxY.getX()));
+		int x0 = Math.max(clipMinX, (int)Math.ceil(minX) - 1);
+		int x1 = Math.min(clipMaxX - 1, (int)Math.ceil(maxX));
+		int y0 = Math.max(clipMinY, (int)Math.ceil(minY.getY()));
+		int y1 = Math.min(clipMaxY - 1, (int)Math.ceil(maxY.getY()) - 1);
+		if(x0 > x1 || y0 > y1)
+		{
+			return false;
+		}
+
+		float minDepth = Math.min(minY.getZ(), Math.min(midY.getZ(), maxY.getZ()));
+		return coarseDepth.isOccluded(x0, y0, x1, y1, minDepth);
+	}
+
+	//edges are always stepped from the triangle's top so a clipped scan gets exactly the same spans as an unclipped one,
+	//only spans cut by the clip rectangle prestep their attributes to it directly
+	private void scanTriangle(Vertex minY, Vertex midY, Vertex maxY, boolean side, Bitmap texture,
+			int clipMinX, int clipMinY, int clipMaxX, int clipMaxY, RenderStats counters)
+	{
+		long start = profiling ? System.nanoTime() : 0;
 		Gradient grad = new Gradient(minY, midY, maxY);
 		Edge topToBottom = new Edge(grad, minY, maxY, 0);
 		Edge topToMiddle = new Edge(grad, minY, midY, 0);
 		Edge middleToBottom = new Edge(grad, midY, maxY, 1);
+		long setupEnd = profiling ? System.nanoTime() : 0;
 
-		scanEdges(topToBottom, topToMiddle, side, texture);
-		scanEdges(topToBottom, middleToBottom, side, texture);
+		counters.pixelsWritten += scanEdges(grad, topToBottom, topToMiddle, side, texture, clipMinX, clipMinY, clipMaxX, clipMaxY) +
+				scanEdges(grad, topToBottom, middleToBottom, side, texture, clipMinX, clipMinY, clipMaxX, clipMaxY);
+		if(profiling)
+		{
+			counters.addStageNanos(RenderStats.STAGE_SETUP, setupEnd - start);
+			counters.addStageNanos(RenderStats.STAGE_FILL, System.nanoTime() - setupEnd);
+		}
 	}
 
-	private void scanEdges(Edge a, Edge b, boolean side, Bitmap texture)
+	//returns the number of pixels written
+	private int scanEdges(Gradient grad, Edge a, Edge b, boolean side, Bitmap texture,
+			int clipMinX, int clipMinY, int clipMaxX, int clipMaxY)
 	{
 		Edge left = a;
 		Edge right = b;
@@ -118,17 +718,23 @@ public class Renderer extends Bitmap
 			right = temp;
 		}
 		int ys = b.getYStart();
-		int ye = b.getYEnd();
+		int ye = Math.min(b.getYEnd(), clipMaxY);
+		int written = 0;
 
 		for(int y = ys; y < ye; y++)
 		{
-			drawScanLine(left, right, y, texture);
+			if(y >= clipMinY)
+			{
+				written += drawScanLine(grad, left, right, y, texture, clipMinX, clipMaxX);
+			}
 			left.step();
 			right.step();
 		}
+		return written;
 	}
 
-	private void drawScanLine(Edge left, Edge right, int y, Bitmap texture)
+	//returns the number of pixels that passed the depth test
+	private int drawScanLine(Gradient grad, Edge left, Edge right, int y, Bitmap texture, int clipMinX, int clipMaxX)
 	{
 		int xMin = (int)Math.ceil(left.getX());
 		int xMax = (int)Math.ceil(right.getX());
@@ -145,70 +751,137 @@ public class Renderer extends Bitmap
 		float oneOverZ = left.getOneOverZ() + oneOverZXStep * xPrestep;
 		float depth = left.getDepth() + depthXStep * xPrestep;
 
-		for(int x = xMin; x < xMax;x++)
+		int xEnd = Math.min(xMax, clipMaxX);
+
+		if(spans != null && textureFilter == Sampler.DIRECT && perspectiveStep == 1)
 		{
-			int index = x + y * getWidth();
-			if(depthBuffer[index] > depth)
+			int from = Math.max(clipMinX - xMin, 0);
+			if(xMin + from < xEnd)
 			{
-				depthBuffer[index] = depth;
-				float z = 1.f / oneOverZ;
-				int srcX = (int)((texCoordX * z) * (float)(texture.getWidth() - 1) + 0.5f);
-				int srcY = (int)((texCoordY * z) * (float)(texture.getHeight() - 1) + 0.5f);
-
-				copyPixel(x, y, srcX, srcY, texture);
+				if(coarseDepth != null)
+				{
+					coarseDepth.markSpan(y, xMin + from, xEnd);
+				}
+				refreshDepth(xMin + from + y * getWidth(), xEnd + y * getWidth());
+				return spans.drawSpan(getPixels(), depthBuffer, xMin + y * getWidth(), from, xEnd - xMin,
+						depth, depthXStep, oneOverZ, oneOverZXStep, texCoordX, texCoordXXStep, texCoordY, texCoordYXStep, texture);
 			}
-			oneOverZ += oneOverZXStep;
-			texCoordX += texCoordXXStep;
-			texCoordY += texCoordYXStep;
-			depth += depthXStep;
+			return 0;
 		}
-	}
 
-	private boolean clipPolygonAxis(List<Vertex> vertices, List<Vertex> auxList, int componentIndex)
-	{
-		clipPolygonComponent(vertices, componentIndex, 1.0f, auxList);
-		vertices.clear();
+		int x = Math.max(xMin, clipMinX);
 
-		if(auxList.isEmpty())
+		if(coarseDepth != null && x < xEnd)
 		{
-			return false;
+			coarseDepth.markSpan(y, x, xEnd);
 		}
 
-		clipPolygonComponent(auxList, componentIndex, -1.0f, vertices);
-		auxList.clear();
-
-		return !vertices.isEmpty();
-	}
-
-	private void clipPolygonComponent(List<Vertex> vertices, int componentIndex, float componentFactor, List<Vertex> result)
-	{
-		Vertex previousVertex = vertices.get(vertices.size() - 1);
-		float previousComponent = previousVertex.get(componentIndex) * componentFactor;
-		boolean previousInside = previousComponent <= previousVertex.getW();
-
-		Iterator<Vertex> it = vertices.iterator();
+		//one level of detail per span, taken at its middle
+		float lod = 0;
+		if(textureFilter != Sampler.DIRECT && x < xEnd)
+		{
+			float half = (x - xMin) + (xEnd - x) * 0.5f;
+			lod = Sampler.computeLod(grad, texCoordX + texCoordXXStep * half, texCoordY + texCoordYXStep * half,
+					oneOverZ + oneOverZXStep * half, texture);
+		}
 
-		while(it.hasNext())
+		//a span cut by a tile or the guard band starts at the clip with one direct prestep, the rest is accumulated
+		if(x > xMin)
 		{
-			Vertex cur = it.next();
-			float currentComponent = cur.get(componentIndex) * componentFactor;
-			boolean currentInside = currentComponent <= cur.getW();
+			float prestep = x - xMin;
+			texCoordX += texCoordXXStep * prestep;
+			texCoordY += texCoordYXStep * prestep;
+			oneOverZ += oneOverZXStep * prestep;
+			depth += depthXStep * prestep;
+		}
+		refreshDepth(x + y * getWidth(), xEnd + y * getWidth());
+		int[] pixels = getPixels();
+		int written = 0;
 
-			if(currentInside ^ previousInside)
+		if(perspectiveStep > 1)
+		{
+			//exact texcoords at the ends of every perspectiveStep pixels, linear in between
+			//the direct path steps in texel units with the rounding offset already added
+			boolean direct = textureFilter == Sampler.DIRECT;
+			float scaleU = direct ? texture.getWidth() - 1 : 1.f;
+			float scaleV = direct ? texture.getHeight() - 1 : 1.f;
+			float offset = direct ? 0.5f : 0.f;
+			int[] texels = texture.getPixels();
+			int texWidth = texture.getWidth();
+			int maxU = texWidth - 1;
+			int maxV = texture.getHeight() - 1;
+			float z = 1.f / oneOverZ;
+			float u = texCoordX * z * scaleU + offset;
+			float v = texCoordY * z * scaleV + offset;
+			int row = y * getWidth();
+
+			while(x < xEnd)
 			{
-				float lerp = (previousVertex.getW() - previousComponent) / 
-						((previousVertex.getW() - previousComponent) - (cur.getW() - currentComponent));
-				result.add(previousVertex.lerp(cur, lerp));
+				int n = Math.min(perspectiveStep, xEnd - x);
+				texCoordX += texCoordXXStep * n;
+				texCoordY += texCoordYXStep * n;
+				oneOverZ += oneOverZXStep * n;
+				z = 1.f / oneOverZ;
+				float uEnd = texCoordX * z * scaleU + offset;
+				float vEnd = texCoordY * z * scaleV + offset;
+				float du = (uEnd - u) / n;
+				float dv = (vEnd - v) / n;
+
+				for(int end = x + n; x < end; x++)
+				{
+					int index = x + row;
+					if(depthBuffer[index] > depth)
+					{
+						depthBuffer[index] = depth;
+						written++;
+						if(direct)
+						{
+							//the affine steps can overshoot the texture near the span's ends, clamp each axis so
+							//that never wraps into the next texel row
+							int srcX = Math.min(Math.max((int)u, 0), maxU);
+							int srcY = Math.min(Math.max((int)v, 0), maxV);
+							pixels[index] = texels[srcX + srcY * texWidth];
+						}
+						else
+						{
+							pixels[index] = Sampler.sample(textureFilter, texture, lod, u, v);
+						}
+					}
+					u += du;
+					v += dv;
+					depth += depthXStep;
+				}
+				u = uEnd;
+				v = vEnd;
 			}
+			return written;
+		}
 
-			if(currentInside)
+		for(; x < xEnd; x++)
+		{
+			int index = x + y * getWidth();
+			if(depthBuffer[index] > depth)
 			{
-				result.add(cur);
+				depthBuffer[index] = depth;
+				written++;
+				float z = 1.f / oneOverZ;
+				if(textureFilter == Sampler.DIRECT)
+				{
+					int srcX = (int)((texCoordX * z) * (float)(texture.getWidth() - 1) + 0.5f);
+					int srcY = (int)((texCoordY * z) * (float)(texture.getHeight() - 1) + 0.5f);
+
+					copyPixel(x, y, srcX, srcY, texture);
+				}
+				else
+				{
+					pixels[index] = Sampler.sample(textureFilter, texture, lod, texCoordX * z, texCoordY * z);
+				}
 			}
-
-			previousVertex = cur;
-			previousComponent = currentComponent;
-			previousInside = currentInside;
+			oneOverZ += oneOverZXStep;
+			texCoordX += texCoordXXStep;
+			texCoordY += texCoordYXStep;
+			depth += depthXStep;
 		}
+		return written;
 	}
 }
@@ -0,0 +1,124 @@
+package graphics;
+
+//texture filtering for the rasterizers
+//DIRECT is the original full resolution lookup, the other modes pick mip levels from a per span lod
+public class Sampler
+{
+	public static final int DIRECT = 0;
+	public static final int NEAREST = 1;
+	public static final int BILINEAR = 2;
+	public static final int TRILINEAR = 3;
+
+	private static final float ONE_OVER_LN2 = (float)(1.0 / Math.log(2.0));
+
+	//log2 of the texel footprint of one pixel, from the screen space derivatives of the perspective correct texcoords
+	public static float computeLod(Gradient grad, float texCoordX, float texCoordY, float oneOverZ, Bitmap texture)
+	{
+		float z = 1.f / oneOverZ;
+		float u = texCoordX * z;
+		float v = texCoordY * z;
+		float w = texture.getWidth();
+		float h = texture.getHeight();
+
+		float dudx = (grad.getTexCoordXXStep() - u * grad.getOneOverZXStep()) * z * w;
+		float dvdx = (grad.getTexCoordYXStep() - v * grad.getOneOverZXStep()) * z * h;
+		float dudy = (grad.getTexCoordXYStep() - u * grad.getOneOverZYStep()) * z * w;
+		float dvdy = (grad.getTexCoordYYStep() - v * grad.getOneOverZYStep()) * z * h;
+
+		float rho = Math.max(dudx * dudx + dvdx * dvdx, dudy * dudy + dvdy * dvdy);
+		if(rho <= 1.f)
+		{
+			return 0.f;
+		}
+		return 0.5f * (float)Math.log(rho) * ONE_OVER_LN2;
+	}
+
+	public static int sample(int filter, Bitmap texture, float lod, float u, float v)
+	{
+		int maxLevel = texture.getNumMipLevels() - 1;
+
+		if(filter == TRILINEAR)
+		{
+			int level = Math.min((int)lod, maxLevel);
+			float frac = lod - level;
+			int c0 = sampleBilinear(texture.getMipLevel(level), u, v);
+			if(level == maxLevel || frac <= 0.f)
+			{
+				return c0;
+			}
+			int c1 = sampleBilinear(texture.getMipLevel(level + 1), u, v);
+			return lerp(c0, c1, (int)(frac * 256.f));
+		}
+
+		Bitmap level = texture.getMipLevel(Math.min((int)(lod + 0.5f), maxLevel));
+		if(filter == BILINEAR)
+		{
+			return sampleBilinear(level, u, v);
+		}
+		return sampleNearest(level, u, v);
+	}
+
+	public static int sampleNearest(Bitmap level, float u, float v)
+	{
+		int w = level.getWidth();
+		int h = level.getHeight();
+		int x = (int)Math.floor(u * w);
+		int y = (int)Math.floor(v * h);
+		int[] pixels = level.getPixels();
+
+		if(level.isPowerOfTwo())
+		{
+			return pixels[(x & (w - 1)) + (y & (h - 1)) * w];
+		}
+		return pixels[clamp(x, w) + clamp(y, h) * w];
+	}
+
+	public static int sampleBilinear(Bitmap level, float u, float v)
+	{
+		int w = level.getWidth();
+		int h = level.getHeight();
+		float s = u * w - 0.5f;
+		float t = v * h - 0.5f;
+		float fs = (float)Math.floor(s);
+		float ft = (float)Math.floor(t);
+		int x0 = (int)fs;
+		int y0 = (int)ft;
+		int fx = (int)((s - fs) * 256.f);
+		int fy = (int)((t - ft) * 256.f);
+		int x1, y1;
+
+		if(level.isPowerOfTwo())
+		{
+			x1 = (x0 + 1) & (w - 1);
+			y1 = (y0 + 1) & (h - 1);
+			x0 &= w - 1;
+			y0 &= h - 1;
+		}
+		else
+		{
+			x1 = clamp(x0 + 1, w);
+			y1 = clamp(y0 + 1, h);
+			x0 = clamp(x0, w);
+			y0 = clamp(y0, h);
+		}
+
+		int[] pixels = level.getPixels();
+		int top = lerp(pixels[x0 + y0 * w], pixels[x1 + y0 * w], fx);
+		int bottom = lerp(pixels[x0 + y1 * w], pixels[x1 + y1 * w], fx);
+		return lerp(top, bottom, fy);
+	}
+
+	//f in 0..256, blends two 8 bit channels per multiply, each channel has 16 bits of headroom
+	private static int lerp(int a, int b, int f)
+	{
+		int g = 256 - f;
+		int rb = (((a & 0x00FF00FF) * g + (b & 0x00FF00FF) * f) >>> 8) & 0x00FF00FF;
+		int ag = ((((a >>> 8) & 0x00FF00FF) * g + ((b >>> 8) & 0x00FF00FF) * f) >>> 8) & 0x00FF00FF;
+		return rb | (ag << 8);
+	}
+
+	private static int clamp(int v, int size)
+	{
+		return v < 0 ? 0 : (v >= size ? size - 1 : v);
+	}
+}
@@ -0,0 +1,75 @@
+package graphics;
+
+//fills one depth tested, unfiltered span with every attribute evaluated as start + step * i instead of accumulated,
+//so lanes are independent of each other and a SIMD backend can produce exactly the same pixels
+//the vector backend lives in src-vector and needs --add-modules jdk.incubator.vector at compile and run time,
+//without it create() falls back to this scalar loop
+class SpanRenderer
+{
+	private static final String VECTOR_BACKEND = "graphics.VectorSpanRenderer";
+
+	private static SpanRenderer best;
+
+	public static synchronized SpanRenderer create()
+	{
+		if(best == null)
+		{
+			try
+			{
+				best = (SpanRenderer)Class.forName(VECTOR_BACKEND).getDeclaredConstructor().newInstance();
+			}
+			catch(Throwable e)
+			{
+				//missing class, missing incubator module or no usable vector shape
+				best = new SpanRenderer();
+			}
+		}
+		return best;
+	}
+
+	public String getName()
+	{
+		return "scalar";
+	}
+
+	//start is the index of the span's first pixel, which the attributes describe, pixels from..to after it are drawn
+	//a span clipped by a tile only changes from and to, so every pixel gets the same values as unclipped
+	//depth values of the drawn pixels must already be refreshed for tagging, see Renderer.refreshDepth
+	//returns the number of pixels that passed the depth test
+	public int drawSpan(int[] pixels, float[] depthBuffer, int start, int from, int to,
+			float depth, float depthStep, float oneOverZ, float oneOverZStep,
+			float texCoordX, float texCoordXStep, float texCoordY, float texCoordYStep, Bitmap texture)
+	{
+		return drawPixels(pixels, depthBuffer, start, from, to, depth, depthStep,
+				oneOverZ, oneOverZStep, texCoordX, texCoordXStep, texCoordY, texCoordYStep, texture);
+	}
+
+	protected static int drawPixels(int[] pixels, float[] depthBuffer,
+			int start, int from, int to, float depth, float depthStep, float oneOverZ, float oneOverZStep,
+			float texCoordX, float texCoordXStep, float texCoordY, float texCoordYStep, Bitmap texture)
+	{
+		int[] texels = texture.getPixels();
+		int texWidth = texture.getWidth();
+		float scaleX = texture.getWidth() - 1;
+		float scaleY = texture.getHeight() - 1;
+		int written = 0;
+
+		for(int i=from;i<to;i++)
+		{
+			float fi = i;
+			float d = depth + depthStep * fi;
+			int index = start + i;
+			if(depthBuffer[index] > d)
+			{
+				depthBuffer[index] = d;
+				written++;
+				float z = 1.f / (oneOverZ + oneOverZStep * fi);
+				int srcX = (int)(((texCoordX + texCoordXStep * fi) * z) * scaleX + 0.5f);
+				int srcY = (int)(((texCoordY + texCoordYStep * fi) * z) * scaleY + 0.5f);
+				int src = srcX + srcY * texWidth;
+				pixels[index] = src >= 0 && src < texels.length ? texels[src] : 0;
+			}
+		}
+		return written;
+	}
+}
@@ -0,0 +1,166 @@
+package graphics;
+
+import java.util.HashMap;
+
+//packs textures into rows of one shared bitmap so geometry using several of them can be drawn in one batch
+//every texture is surrounded by GUTTER replicated edge texels so filtering does not pick up its neighbours,
+//at coarse mip levels the gutter shrinks below a texel and some bleeding is expected
+public class TextureAtlas
+{
+	public static final int GUTTER = 2;
+
+	//where a texture ended up, maps its 0..1 texcoords into atlas texcoords
+	public static class Region
+	{
+		private final int x;
+		private final int y;
+		private final int w;
+		private final int h;
+		private final float scaleU;
+		private final float scaleV;
+
+		Region(int x, int y, int w, int h, int atlasW, int atlasH)
+		{
+			this.x = x;
+			this.y = y;
+			this.w = w;
+			this.h = h;
+			//the renderer samples texel round(u * (width - 1)), keep that exact for the packed texture
+			scaleU = 1.f / (atlasW - 1);
+			scaleV = 1.f / (atlasH - 1);
+		}
+
+		public float mapU(float u)
+		{
+			return (x + u * (w - 1)) * scaleU;
+		}
+
+		public float mapV(float v)
+		{
+			return (y + v * (h - 1)) * scaleV;
+		}
+
+		public void map(Vector4f texCoord, Vector4f dest)
+		{
+			dest.setXYZW(mapU(texCoord.getX()), mapV(texCoord.getY()), texCoord.getZ(), texCoord.getW());
+		}
+
+		public int getX()
+		{
+			return x;
+		}
+
+		public int getY()
+		{
+			return y;
+		}
+
+		public int getWidth()
+		{
+			return w;
+		}
+
+		public int getHeight()
+		{
+			return h;
+		}
+	}
+
+	private final Bitmap atlas;
+	private final HashMap<String, Region> regions;
+	private int rowX;
+	private int rowY;
+	private int rowHeight;
+	private boolean mipmapsDirty;
+
+	public TextureAtlas(int w, int h)
+	{
+		atlas = new Bitmap(w, h);
+		regions = new HashMap<String, Region>();
+		mipmapsDirty = true;
+	}
+
+	//returns the region of an already packed name without copying again, null if the texture does not fit
+	public Region add(String name, Bitmap texture)
+	{
+		Region region = regions.get(name);
+		if(region != null)
+		{
+			return region;
+		}
+
+		int w = texture.getWidth();
+		int h = texture.getHeight();
+		int paddedW = w + 2 * GUTTER;
+		int paddedH = h + 2 * GUTTER;
+		if(paddedW > atlas.getWidth() || paddedH > atlas.getHeight())
+		{
+			return null;
+		}
+
+		if(rowX + paddedW > atlas.getWidth())
+		{
+			rowX = 0;
+			rowY += rowHeight;
+			rowHeight = 0;
+		}
+		if(rowY + paddedH > atlas.getHeight())
+		{
+			return null;
+		}
+
+		copy(texture, rowX + GUTTER, rowY + GUTTER);
+		region = new Region(rowX + GUTTER, rowY + GUTTER, w, h, atlas.getWidth(), atlas.getHeight());
+		regions.put(name, region);
+
+		rowX += paddedW;
+		rowHeight = Math.max(rowHeight, paddedH);
+		mipmapsDirty = true;
+		return region;
+	}
+
+	public Region getRegion(String name)
+	{
+		return regions.get(name);
+	}
+
+	public int getNumRegions()
+	{
+		return regions.size();
+	}
+
+	//mip levels are rebuilt lazily, so adding several textures in a row only filters once
+	public Bitmap getBitmap()
+	{
+		if(mipmapsDirty)
+		{
+			atlas.buildMipmaps();
+			mipmapsDirty = false;
+		}
+		return atlas;
+	}
+
+	private void copy(Bitmap texture, int destX, int destY)
+	{
+		int w = texture.getWidth();
+		int h = texture.getHeight();
+		int[] src = texture.getPixels();
+		int[] dest = atlas.getPixels();
+		int atlasW = atlas.getWidth();
+
+		for(int y = -GUTTER; y < h + GUTTER; y++)
+		{
+			int srcRow = Math.min(Math.max(y, 0), h - 1) * w;
+			int destRow = (destY + y) * atlasW + destX;
+			for(int x = -GUTTER; x < 0; x++)
+			{
+				dest[destRow + x] = src[srcRow];
+			}
+			System.arraycopy(src, srcRow, dest, destRow, w);
+			for(int x = w; x < w + GUTTER; x++)
+			{
+				dest[destRow + x] = src[srcRow + w - 1];
+			}
+		}
+	}
+}
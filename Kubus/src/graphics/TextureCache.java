@@ -0,0 +1,294 @@
+package graphics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//loads every image file once and shares the bitmap between everything that asks for it
+//when the loaded textures, their mip chains and the pinned bitmaps exceed the budget the least recently used
+//textures are dropped, callers should ask the cache again instead of keeping evicted bitmaps alive,
+//a Handle does that only after a removal
+public class TextureCache
+{
+	public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+	private static TextureCache shared;
+
+	private static class Entry
+	{
+		private final Bitmap texture;
+		private final long size;
+		//use clock at the last use, handles write it without the lock
+		private volatile long lastUse;
+
+		private Entry(Bitmap texture)
+		{
+			this.texture = texture;
+			size = getSize(texture);
+		}
+	}
+
+	private final HashMap<String, Entry> textures;
+	//bitmaps owned elsewhere, e.g. atlases, that count against the budget but are never evicted
+	//held weakly so an owner that goes away stops counting once it is collected
+	private final WeakHashMap<Bitmap, Boolean> pinned;
+	private long budget;
+	//bytes of the cached textures, pinned bitmaps are summed when needed since their mip chains can grow
+	private long usedBytes;
+	//ticks on every use, lookups and handles alike
+	private final AtomicLong useClock;
+	private int hits;
+	private int misses;
+	private int evictions;
+	//bumped whenever a texture leaves the cache, read without the lock by handles
+	private volatile int generation;
+
+	public TextureCache(long budget)
+	{
+		textures = new HashMap<String, Entry>();
+		pinned = new WeakHashMap<Bitmap, Boolean>();
+		useClock = new AtomicLong();
+		this.budget = budget;
+	}
+
+	public static synchronized TextureCache getShared()
+	{
+		if(shared == null)
+		{
+			shared = new TextureCache(Long.getLong("kubus.texturebudget", DEFAULT_BUDGET));
+		}
+		return shared;
+	}
+
+	public synchronized Bitmap load(String fileName) throws IOException
+	{
+		return loadEntry(fileName).texture;
+	}
+
+	//like load, but a file that cannot be read is replaced by a cached 1x1 placeholder
+	public synchronized Bitmap get(String fileName)
+	{
+		return getEntry(fileName).texture;
+	}
+
+	private Entry loadEntry(String fileName) throws IOException
+	{
+		String key = getKey(fileName);
+		Entry entry = textures.get(key);
+		if(entry != null)
+		{
+			hits++;
+			entry.lastUse = useClock.incrementAndGet();
+			return entry;
+		}
+
+		misses++;
+		return add(key, new Bitmap(fileName));
+	}
+
+	private Entry getEntry(String fileName)
+	{
+		try
+		{
+			return loadEntry(fileName);
+		}
+		catch(IOException e)
+		{
+			e.printStackTrace();
+			return add(getKey(fileName), new Bitmap(1, 1));
+		}
+	}
+
+	private Entry add(String key, Bitmap texture)
+	{
+		Entry entry = new Entry(texture);
+		entry.lastUse = useClock.incrementAndGet();
+		textures.put(key, entry);
+		usedBytes += entry.size;
+		trim();
+		return entry;
+	}
+
+	public Handle getHandle(String fileName)
+	{
+		return new Handle(this, fileName);
+	}
+
+	public synchronized boolean contains(String fileName)
+	{
+		return textures.containsKey(getKey(fileName));
+	}
+
+	public synchronized void evict(String fileName)
+	{
+		Entry entry = textures.remove(getKey(fileName));
+		if(entry != null)
+		{
+			usedBytes -= entry.size;
+			evictions++;
+			generation++;
+		}
+	}
+
+	//counts a bitmap owned elsewhere, like an atlas, and all of its mip levels against the budget
+	public synchronized void pin(Bitmap texture)
+	{
+		pinned.put(texture, Boolean.TRUE);
+		trim();
+	}
+
+	public synchronized void unpin(Bitmap texture)
+	{
+		pinned.remove(texture);
+	}
+
+	public synchronized void clear()
+	{
+		textures.clear();
+		usedBytes = 0;
+		generation++;
+	}
+
+	public synchronized void setBudget(long budget)
+	{
+		this.budget = budget;
+		trim();
+	}
+
+	public synchronized long getBudget()
+	{
+		return budget;
+	}
+
+	public synchronized long getUsedBytes()
+	{
+		return usedBytes + getPinnedBytes();
+	}
+
+	public synchronized long getPinnedBytes()
+	{
+		long size = 0;
+		for(Bitmap texture : pinned.keySet())
+		{
+			size += getSize(texture);
+		}
+		return size;
+	}
+
+	public synchronized int getNumTextures()
+	{
+		return textures.size();
+	}
+
+	public synchronized int getHits()
+	{
+		return hits;
+	}
+
+	public synchronized int getMisses()
+	{
+		return misses;
+	}
+
+	public synchronized int getEvictions()
+	{
+		return evictions;
+	}
+
+	public int getGeneration()
+	{
+		return generation;
+	}
+
+	//bytes held by a bitmap and all of its mip levels
+	public static long getSize(Bitmap texture)
+	{
+		long size = 0;
+		for(int a=0;a<texture.getNumMipLevels();a++)
+		{
+			Bitmap level = texture.getMipLevel(a);
+			size += (long)level.getWidth() * level.getHeight() * 4;
+		}
+		return size;
+	}
+
+	//drops the textures with the oldest use first, the most recently used one always stays,
+	//even if it alone or together with the pinned bitmaps is over budget
+	private void trim()
+	{
+		long pinnedBytes = getPinnedBytes();
+		while(usedBytes + pinnedBytes > budget && textures.size() > 1)
+		{
+			Map.Entry<String, Entry> oldest = null;
+			for(Map.Entry<String, Entry> e : textures.entrySet())
+			{
+				if(oldest == null || e.getValue().lastUse < oldest.getValue().lastUse)
+				{
+					oldest = e;
+				}
+			}
+			textures.remove(oldest.getKey());
+			usedBytes -= oldest.getValue().size;
+			evictions++;
+			generation++;
+		}
+	}
+
+	//different spellings of the same file share one entry
+	private static String getKey(String fileName)
+	{
+		return new File(fileName).getAbsoluteFile().toURI().normalize().getPath();
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "textures " + textures.size() + ", " + (getUsedBytes() >> 10) + "/" + (budget >> 10) + " KiB, hits " + hits +
+				", misses " + misses + ", evicted " + evictions;
+	}
+
+	//one texture for code that draws it every frame, the cache is only asked again after it dropped something,
+	//so the lock and the key normalization stay out of the frame
+	//every get() still stamps the entry with the cache's use clock, so textures drawn every frame stay the most
+	//recently used and are the last to be evicted
+	public static class Handle
+	{
+		private final TextureCache cache;
+		private final String fileName;
+		private Entry entry;
+		private int generation;
+
+		private Handle(TextureCache cache, String fileName)
+		{
+			this.cache = cache;
+			this.fileName = fileName;
+		}
+
+		public Bitmap get()
+		{
+			int current = cache.generation;
+			if(entry == null || generation != current)
+			{
+				//read before fetching, a removal in between only costs another fetch next time
+				synchronized(cache)
+				{
+					entry = cache.getEntry(fileName);
+				}
+				generation = current;
+			}
+			else
+			{
+				entry.lastUse = cache.useClock.incrementAndGet();
+			}
+			return entry.texture;
+		}
+
+		public String getFileName()
+		{
+			return fileName;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package graphics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//sorts screen space triangles into per tile lists, keeping submission order inside each tile
+//queued triangles are copied into pooled objects that are reused after clear(), so binning allocates nothing per frame
+//and callers may overwrite their vertices right after add()
+class TileBins
+{
+	static class Triangle
+	{
+		final Vertex minY;
+		final Vertex midY;
+		final Vertex maxY;
+		boolean side;
+		Bitmap texture;
+
+		Triangle()
+		{
+			minY = new Vertex(new Vector4f(0, 0, 0, 0), new Vector4f(0, 0, 0, 0));
+			midY = new Vertex(new Vector4f(0, 0, 0, 0), new Vector4f(0, 0, 0, 0));
+			maxY = new Vertex(new Vector4f(0, 0, 0, 0), new Vector4f(0, 0, 0, 0));
+		}
+
+		void set(Vertex minY, Vertex midY, Vertex maxY, boolean side, Bitmap texture)
+		{
+			this.minY.set(minY);
+			this.midY.set(midY);
+			this.maxY.set(maxY);
+			this.side = side;
+			this.texture = texture;
+		}
+	}
+
+	private final int width;
+	private final int height;
+	private final int tileSize;
+	private final int tilesX;
+	private final int tilesY;
+	private ArrayList<ArrayList<Triangle>> bins;
+	private ArrayList<Triangle> triangles;
+	private int numTriangles;
+	private boolean empty;
+
+	public TileBins(int width, int height, int tileSize)
+	{
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		tilesX = (width + tileSize - 1) / tileSize;
+		tilesY = (height + tileSize - 1) / tileSize;
+		bins = new ArrayList<ArrayList<Triangle>>();
+		for(int a=0;a<tilesX * tilesY;a++) { bins.add(new ArrayList<Triangle>()); }
+		triangles = new ArrayList<Triangle>();
+		empty = true;
+	}
+
+	public void add(Vertex minY, Vertex midY, Vertex maxY, boolean side, Bitmap texture)
+	{
+		int yStart = (int)Math.ceil(minY.getY());
+		int yEnd = (int)Math.ceil(maxY.getY());
+		if(yEnd <= yStart)
+		{
+			return;
+		}
+
+		float minX = Math.min(minY.getX(), Math.min(midY.getX(), maxY.getX()));
+		float maxX = Math.max(minY.getX(), Math.max(midY.getX(), maxY.getX()));
+		int xStart = (int)Math.ceil(minX);
+		int xEnd = (int)Math.ceil(maxX);
+
+		//edge stepping can drift past the vertex bounds, pad x by a pixel
+		int tx0 = clamp(xStart - 1, width) / tileSize;
+		int tx1 = clamp(xEnd, width) / tileSize;
+		int ty0 = clamp(yStart, height) / tileSize;
+		int ty1 = clamp(yEnd - 1, height) / tileSize;
+
+		if(numTriangles == triangles.size())
+		{
+			triangles.add(new Triangle());
+		}
+		Triangle t = triangles.get(numTriangles++);
+		t.set(minY, midY, maxY, side, texture);
+		for(int ty = ty0; ty <= ty1; ty++)
+		{
+			for(int tx = tx0; tx <= tx1; tx++)
+			{
+				bins.get(tx + ty * tilesX).add(t);
+			}
+		}
+		empty = false;
+	}
+
+	private static int clamp(int v, int size)
+	{
+		if(v < 0)
+			return 0;
+		if(v >= size)
+			return size - 1;
+		return v;
+	}
+
+	public void clear()
+	{
+		for(int a=0;a<bins.size();a++)
+		{
+			bins.get(a).clear();
+		}
+		for(int a=0;a<numTriangles;a++)
+		{
+			triangles.get(a).texture = null;
+		}
+		numTriangles = 0;
+		empty = true;
+	}
+
+	public boolean isEmpty()
+	{
+		return empty;
+	}
+
+	public int getNumTiles()
+	{
+		return tilesX * tilesY;
+	}
+
+	public int getTileSize()
+	{
+		return tileSize;
+	}
+
+	public int getTileMinX(int tile)
+	{
+		return (tile % tilesX) * tileSize;
+	}
+
+	public int getTileMinY(int tile)
+	{
+		return (tile / tilesX) * tileSize;
+	}
+
+	public List<Triangle> getBin(int tile)
+	{
+		return bins.get(tile);
+	}
+}
@@ -1,64 +1,142 @@
 package graphics;
 
-public class Transformation 
+//position, rotation and scale of an object, optionally relative to a parent transformation
+//the composite matrix is cached and only rebuilt after a setter was called or the parent changed,
+//getVersion() changes whenever the matrix getTransformation() returns does
+public class Transformation
 {
 	private Vector4f position;
 	private Vector4f scale;
 	private Matrix4f rotation;
-	
+	private Transformation parent;
+	//scratch matrices for getTransformation
+	private Matrix4f translationM;
+	private Matrix4f scaleM;
+	//translation * rotation * scale, and the same with the parent's transformation applied
+	private Matrix4f local;
+	private Matrix4f transformation;
+	private boolean dirty;
+	private int parentVersion;
+	private int version;
+
 	public Transformation()
 	{
 		position = new Vector4f(0, 0, 0, 0);
 		scale = new Vector4f(1, 1, 1, 1);
 		rotation = new Matrix4f().initRotation(0, 0, 0);
+		translationM = new Matrix4f();
+		scaleM = new Matrix4f();
+		local = new Matrix4f();
+		transformation = new Matrix4f();
+		dirty = true;
 	}
-	
+
+	//the vector is copied, later changes to it are not seen
 	public void setPosition(Vector4f position)
 	{
-		this.position = position;
+		this.position.setXYZW(position.getX(), position.getY(), position.getZ(), position.getW());
+		dirty = true;
 	}
-	
+
+	//read only, use setPosition to move
 	public Vector4f getPosition()
 	{
 		return position;
 	}
-	
+
 	public void setRotation(Vector4f fwd, Vector4f up)
 	{
 		rotation.initRotation(fwd, up);
+		dirty = true;
 	}
-	
+
 	public void setRotation(float x, float y, float z)
 	{
 		rotation.initRotation(x, y, z);
+		dirty = true;
 	}
-	
+
 	public void lookAt(Vector4f point, Vector4f up)
 	{
 		rotation.initRotation(point.sub(position).normalized(), up);
+		dirty = true;
 	}
-	
+
 	public void setScale(float x, float y, float z)
 	{
 		scale.setXYZW(x, y, z, 1);
+		dirty = true;
 	}
-	
+
+	//the matrix is copied, later changes to it are not seen
 	public void setRotation(Matrix4f rotation)
 	{
-		this.rotation = rotation;
+		this.rotation.set(rotation);
+		dirty = true;
 	}
-	
+
+	//read only, use setRotation to turn
 	public Matrix4f getRotation()
 	{
 		return rotation;
 	}
-	
+
+	//this transformation is applied first and the parent's after it, null detaches
+	public void setParent(Transformation parent)
+	{
+		for(Transformation p = parent; p != null; p = p.parent)
+		{
+			if(p == this)
+			{
+				throw new IllegalArgumentException("transformation would become its own parent");
+			}
+		}
+		this.parent = parent;
+		dirty = true;
+	}
+
+	public Transformation getParent()
+	{
+		return parent;
+	}
+
+	public int getVersion()
+	{
+		update();
+		return version;
+	}
+
+	//read only, the matrix is updated in place when this or a parent changes
 	public Matrix4f getTransformation()
 	{
-		Matrix4f translation = new Matrix4f().initTranslation(position.getX(), position.getY(), position.getZ());
-		Matrix4f scaleM = new Matrix4f().initScale(scale.getX(), scale.getY(), scale.getZ());
-		
-		return translation.mul(rotation.mul(scaleM));
-		
+		update();
+		return transformation;
+	}
+
+	private void update()
+	{
+		boolean parentChanged = parent != null && parent.getVersion() != parentVersion;
+		if(!dirty && !parentChanged)
+		{
+			return;
+		}
+		if(dirty)
+		{
+			translationM.initTranslation(position.getX(), position.getY(), position.getZ());
+			scaleM.initScale(scale.getX(), scale.getY(), scale.getZ());
+			rotation.mulInto(scaleM, local);
+			translationM.mulInto(local, local);
+			dirty = false;
+		}
+		if(parent != null)
+		{
+			parent.getTransformation().mulInto(local, transformation);
+			parentVersion = parent.getVersion();
+		}
+		else
+		{
+			transformation.set(local);
+		}
+		version++;
 	}
 }
@@ -55,12 +55,37 @@ public class Vertex
 		return new Vertex(t.transform(pos), texCoord);
 	}
 
+	//writes the transformed vertex into dest instead of allocating a new one
+	public Vertex transform(Matrix4f t, Vertex dest)
+	{
+		t.transformInto(pos, dest.pos);
+		dest.texCoord = texCoord;
+		return dest;
+	}
+
 	public Vertex perspectiveDivide()
 	{
 		return new Vertex(new Vector4f(pos.getX() / pos.getW(), pos.getY() / pos.getW(), 
 				pos.getZ() / pos.getW(), pos.getW()), texCoord);
 	}
 
+	//dest may be this
+	public Vertex perspectiveDivide(Vertex dest)
+	{
+		dest.pos.setXYZW(pos.getX() / pos.getW(), pos.getY() / pos.getW(), pos.getZ() / pos.getW(), pos.getW());
+		dest.texCoord = texCoord;
+		return dest;
+	}
+
+	//copies position and texcoord values, this needs its own texcoord vector
+	public Vertex set(Vertex v)
+	{
+		pos.setXYZW(v.getX(), v.getY(), v.getZ(), v.getW());
+		Vector4f t = v.texCoord;
+		texCoord.setXYZW(t.getX(), t.getY(), t.getZ(), t.getW());
+		return this;
+	}
+
 	public float triangleArea(Vertex b, Vertex c)
 	{
 		float x1 = b.getX() - pos.getX();
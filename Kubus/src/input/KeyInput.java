@@ -9,13 +9,15 @@ public class KeyInput implements KeyListener
 	public static final int RIGHT_ARROW = 1;
 	public static final int UP_ARROW = 2;
 	public static final int DOWN_ARROW = 3;
+	//toggles the profiler overlay
+	public static final int F3 = 4;
 	
 	private boolean[] keysDown;
 	private boolean ignore;
 	
 	public KeyInput()
 	{
-		keysDown = new boolean[]{false, false, false, false};
+		keysDown = new boolean[]{false, false, false, false, false};
 		ignore = false;
 	}
 	
@@ -42,6 +44,9 @@ public class KeyInput implements KeyListener
 			keysDown[DOWN_ARROW] = true;
 //			System.out.println(keysDown[DOWN_ARROW]);
 			break;
+		case KeyEvent.VK_F3:
+			keysDown[F3] = true;
+			break;
 		}
 	}
 
@@ -62,6 +67,9 @@ public class KeyInput implements KeyListener
 		case KeyEvent.VK_DOWN:
 			keysDown[DOWN_ARROW] = false;
 			break;
+		case KeyEvent.VK_F3:
+			keysDown[F3] = false;
+			break;
 		}
 	}
 
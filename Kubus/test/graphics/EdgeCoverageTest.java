@@ -0,0 +1,238 @@
+package graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+//checks that triangles sharing edges cover every pixel exactly once
+//random convex polygons are drawn one triangle at a time as a fan around an inner point, no pixel may be hit twice,
+//and the union has to equal the same polygon fanned from its first corner, otherwise a shared edge cracked
+//jittered quad grids split along random diagonals check the same for edges in every direction
+//half of the cases put their corners on a half pixel grid so pixel centers often lie exactly on an edge
+//in the transformed cases every triangle reaches the screen through its own model translation, like tiles placed far
+//from their mesh's origin, so a corner two triangles share comes out a few ulps apart in each of them
+//the scanline path takes Math.ceil of those positions and overlaps or cracks, the fixed point and half-space paths snap
+//them back together
+public class EdgeCoverageTest
+{
+	private static final int SIZE = 128;
+	private static final int CASES = 100;
+	private static final long SEED = 1;
+	//clip space range of the model translations, far enough that shared corners round differently
+	private static final float TRANSLATION_RANGE = 20;
+
+	private Renderer target;
+	private Bitmap white;
+	private int[] coverage;
+	private int[] union;
+	private Random random;
+	private float translationRange;
+	private boolean halfPixelGrid;
+
+	private void setUp(int rasterMode, float translationRange)
+	{
+		target = new Renderer(SIZE, SIZE);
+		target.setRasterMode(rasterMode);
+		white = new Bitmap(1, 1);
+		white.getPixels()[0] = 0xFFFFFFFF;
+		coverage = new int[SIZE * SIZE];
+		union = new int[SIZE * SIZE];
+		random = new Random(SEED);
+		this.translationRange = translationRange;
+	}
+
+	@Test
+	public void fixedPointCoversSharedEdgesOnce()
+	{
+		setUp(Renderer.RASTER_FIXED, 0);
+		assertEquals(0, countFailingCases());
+	}
+
+	@Test
+	public void fixedPointCoversTransformedSharedEdgesOnce()
+	{
+		setUp(Renderer.RASTER_FIXED, TRANSLATION_RANGE);
+		assertEquals(0, countFailingCases());
+	}
+
+	@Test
+	public void halfSpaceCoversSharedEdgesOnce()
+	{
+		setUp(Renderer.RASTER_HALFSPACE, 0);
+		assertEquals(0, countFailingCases());
+	}
+
+	@Test
+	public void halfSpaceCoversTransformedSharedEdgesOnce()
+	{
+		setUp(Renderer.RASTER_HALFSPACE, TRANSLATION_RANGE);
+		assertEquals(0, countFailingCases());
+	}
+
+	//keeps the transformed cases sharp enough to catch a rasterizer that does not snap
+	@Test
+	public void scanlineBreaksTransformedSharedEdges()
+	{
+		setUp(Renderer.RASTER_SCANLINE, TRANSLATION_RANGE);
+		assertTrue(countFailingCases() > 0);
+	}
+
+	private int countFailingCases()
+	{
+		int failed = 0;
+		for(int a=0;a<CASES;a++)
+		{
+			if(checkPolygon() > 0)
+			{
+				failed++;
+			}
+			if(checkGrid() > 0)
+			{
+				failed++;
+			}
+		}
+		return failed;
+	}
+
+	//screen space position to a clip space vertex the renderer maps back onto that position,
+	//moved by -tx, -ty and back again as a model translation would
+	private Vertex toVertex(float x, float y, float tx, float ty)
+	{
+		if(halfPixelGrid)
+		{
+			x = Math.round(x * 2) / 2.f;
+			y = Math.round(y * 2) / 2.f;
+		}
+		float half = SIZE / 2.f;
+		Vector4f local = new Vector4f((x + 0.5f - half) / half - tx, (half - 0.5f - y) / half - ty, 0, 1);
+		return new Vertex(new Matrix4f().initTranslation(tx, ty, 0).transform(local), new Vector4f(0, 0, 0, 0));
+	}
+
+	private float nextTranslation()
+	{
+		return (random.nextFloat() - 0.5f) * translationRange;
+	}
+
+	//draws one triangle on its own and adds the pixels it touched to counts
+	private void accumulate(Vertex a, Vertex b, Vertex c, int[] counts)
+	{
+		target.clear();
+		target.drawTriangle(a, b, c, white);
+		target.flush();
+		int[] pixels = target.getPixels();
+		for(int i=0;i<counts.length;i++)
+		{
+			if(pixels[i] != 0)
+			{
+				counts[i]++;
+			}
+		}
+	}
+
+	private static int countOverlaps(int[] counts)
+	{
+		int overlaps = 0;
+		for(int i=0;i<counts.length;i++)
+		{
+			if(counts[i] > 1)
+			{
+				overlaps++;
+			}
+		}
+		return overlaps;
+	}
+
+	//returns the number of overlapping and cracked pixels
+	private int checkPolygon()
+	{
+		halfPixelGrid = random.nextBoolean();
+		int corners = 3 + random.nextInt(10);
+		float cx = 30 + random.nextFloat() * (SIZE - 60);
+		float cy = 30 + random.nextFloat() * (SIZE - 60);
+		float radius = 5 + random.nextFloat() * 24;
+		float[] xs = new float[corners];
+		float[] ys = new float[corners];
+
+		//jittered corners on a circle, gaps stay below half a turn so the polygon is convex and contains the center
+		float start = random.nextFloat() * (float)Math.PI * 2.f;
+		for(int a=0;a<corners;a++)
+		{
+			float angle = start + (float)Math.PI * 2.f * (a + random.nextFloat() * 0.4f) / corners;
+			xs[a] = cx + radius * (float)Math.cos(angle);
+			ys[a] = cy + radius * (float)Math.sin(angle);
+		}
+
+		Arrays.fill(coverage, 0);
+		Arrays.fill(union, 0);
+		for(int a=0;a<corners;a++)
+		{
+			int b = (a + 1) % corners;
+			float tx = nextTranslation();
+			float ty = nextTranslation();
+			accumulate(toVertex(cx, cy, tx, ty), toVertex(xs[a], ys[a], tx, ty), toVertex(xs[b], ys[b], tx, ty), coverage);
+		}
+		for(int a=1;a<corners-1;a++)
+		{
+			accumulate(toVertex(xs[0], ys[0], 0, 0), toVertex(xs[a], ys[a], 0, 0), toVertex(xs[a + 1], ys[a + 1], 0, 0),
+					union);
+		}
+
+		int cracks = 0;
+		for(int i=0;i<coverage.length;i++)
+		{
+			if((coverage[i] > 0) != (union[i] > 0))
+			{
+				cracks++;
+			}
+		}
+		return countOverlaps(coverage) + countOverlaps(union) + cracks;
+	}
+
+	//returns the number of overlapping pixels
+	private int checkGrid()
+	{
+		halfPixelGrid = random.nextBoolean();
+		int cells = 2 + random.nextInt(6);
+		float cell = (SIZE - 20) / (float)cells;
+		float[][] xs = new float[cells + 1][cells + 1];
+		float[][] ys = new float[cells + 1][cells + 1];
+		for(int i=0;i<=cells;i++)
+		{
+			for(int j=0;j<=cells;j++)
+			{
+				xs[i][j] = 10 + i * cell + (random.nextFloat() - 0.5f) * cell * 0.4f;
+				ys[i][j] = 10 + j * cell + (random.nextFloat() - 0.5f) * cell * 0.4f;
+			}
+		}
+
+		Arrays.fill(coverage, 0);
+		for(int i=0;i<cells;i++)
+		{
+			for(int j=0;j<cells;j++)
+			{
+				//one translation per cell, the diagonal is shared exactly and the cell borders are not
+				float tx = nextTranslation();
+				float ty = nextTranslation();
+				Vertex v00 = toVertex(xs[i][j], ys[i][j], tx, ty);
+				Vertex v10 = toVertex(xs[i + 1][j], ys[i + 1][j], tx, ty);
+				Vertex v01 = toVertex(xs[i][j + 1], ys[i][j + 1], tx, ty);
+				Vertex v11 = toVertex(xs[i + 1][j + 1], ys[i + 1][j + 1], tx, ty);
+				if(random.nextBoolean())
+				{
+					accumulate(v00, v10, v11, coverage);
+					accumulate(v11, v01, v00, coverage);
+				}
+				else
+				{
+					accumulate(v10, v11, v01, coverage);
+					accumulate(v01, v00, v10, coverage);
+				}
+			}
+		}
+		return countOverlaps(coverage);
+	}
+}